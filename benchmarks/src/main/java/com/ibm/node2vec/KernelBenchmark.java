@@ -0,0 +1,84 @@
+package com.ibm.node2vec;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The kernels of DotKernel against each other, per vector size: a dot product (the
+ * similarity of skipgram and of the queries), an axpy (the updates of skipgram) and a
+ * squared distance. Each operation goes over ROWS rows of a matrix, at offsets as in
+ * syn0/syn1neg, so that the loads aren't all from one cached array.
+ *
+ * @author dganguly
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class KernelBenchmark {
+    static final int ROWS = 1024;
+
+    @Param({"32", "64", "100", "128", "200", "256", "300", "512"})
+    int dims;
+
+    @Param({"scalar", "unrolled", "vector"})
+    String kernel;
+
+    DotKernel k;
+    float[] matrix;
+    float[] v;
+
+    @Setup
+    public void setup() {
+        k = DotKernel.forName(kernel);
+        Random rnd = new Random(123);
+        matrix = new float[ROWS * dims];
+        for (int i = 0; i < matrix.length; i++)
+            matrix[i] = (rnd.nextFloat() - 0.5f) / dims;
+        v = new float[dims];
+        for (int i = 0; i < dims; i++)
+            v[i] = (rnd.nextFloat() - 0.5f) / dims;
+    }
+
+    /** ROWS dot products. */
+    @Benchmark
+    public float dot() {
+        float sum = 0;
+        for (int r = 0; r < ROWS; r++)
+            sum += k.dot(v, 0, matrix, r * dims, dims);
+        return sum;
+    }
+
+    /** ROWS axpys, alternating the sign so that the values stay bounded. */
+    @Benchmark
+    public float[] axpy() {
+        float alpha = 1e-3f;
+        for (int r = 0; r < ROWS; r++) {
+            k.axpy(alpha, v, 0, matrix, r * dims, dims);
+            alpha = -alpha;
+        }
+        return matrix;
+    }
+
+    /** ROWS squared distances. */
+    @Benchmark
+    public float squaredDistance() {
+        float sum = 0;
+        for (int r = 0; r < ROWS; r++)
+            sum += k.squaredDistance(v, 0, matrix, r * dims, dims);
+        return sum;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ibm.node2vec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * The start-up costs: reading the graph (LearnVocabFromTrainFile, which includes the
+ * set-up of the walk sampler), the unigram table of the negative samples and the
+ * parsing of a text vector file by WordVecs. The readers also count the bytes of
+ * their input, so that their throughput is reported in bytes/s besides loads/s.
+ *
+ * @author dganguly
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class LoadBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int nodes;
+
+    @Param({"10"})
+    int avgDegree;
+
+    @Param({"64"})
+    int dims;
+
+    @Param({"1"})
+    int threads;
+
+    File graphFile, vecFile;
+    Node2Vec loaded; // for InitUnigramTable
+
+    @Setup
+    public void setup(BenchmarkParams params) throws IOException {
+        String name = params.getBenchmark();
+        if (name.endsWith("loadFromTextFile"))
+            vecFile = SyntheticData.vectors(nodes, dims);
+        else
+            graphFile = SyntheticData.powerLawGraph(nodes, avgDegree);
+        if (name.endsWith("initUnigramTable"))
+            loaded = SyntheticData.load(graphFile, true, 1, 0.5f);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() { bytes = 0; }
+    }
+
+    @Benchmark
+    public Node2Vec learnVocabFromTrainFile(Counters counters) throws IOException {
+        Node2Vec n2v = new Node2Vec();
+        n2v.debug_mode = 0;
+        n2v.directed = false;
+        n2v.p1 = 1;
+        n2v.q1 = 0.5f;
+        n2v.num_threads = threads;
+        n2v.initTables();
+        n2v.setInput(new FileInputStream(graphFile));
+        n2v.LearnVocabFromTrainFile();
+        counters.bytes += graphFile.length();
+        return n2v;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public AliasTable initUnigramTable() {
+        loaded.InitUnigramTable();
+        return loaded.unigram;
+    }
+
+    @Benchmark
+    public WordVecs loadFromTextFile(Counters counters) throws IOException {
+        WordVecs wvecs = new WordVecs();
+        wvecs.loadFromTextFile(new FileInputStream(vecFile));
+        counters.bytes += vecFile.length();
+        return wvecs;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ibm.node2vec;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Latency distribution (sampled) of an exact top-k query of WordVecs, i.e. a scan of
+ * all the vectors, for a node drawn at random.
+ *
+ * @author dganguly
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+public class QueryBenchmark {
+    @Param({"10000", "100000"})
+    int nodes;
+
+    @Param({"64", "128"})
+    int dims;
+
+    @Param({"10"})
+    int k;
+
+    WordVecs wvecs;
+    String[] words;
+
+    @Setup
+    public void setup() throws IOException {
+        wvecs = new WordVecs();
+        wvecs.loadFromTextFile(new FileInputStream(SyntheticData.vectors(nodes, dims)));
+        words = wvecs.asMap().keySet().toArray(new String[0]);
+        wvecs.rows(); // built on the first query otherwise
+    }
+
+    @State(Scope.Thread)
+    public static class Queries {
+        Word2VecRandom next_random;
+
+        @Setup
+        public void setup(ThreadParams thread) {
+            next_random = new Word2VecRandom(Node2Vec.SEED + thread.getThreadIndex());
+        }
+    }
+
+    @Benchmark
+    public List<WordVec> getNearestNeighbors(Queries queries) {
+        queries.next_random.next();
+        return wvecs.getNearestNeighbors(words[queries.next_random.remainder(words.length)], k);
+    }
+}
@@ -0,0 +1,83 @@
+package com.ibm.node2vec;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Walks per second of the two samplers of Node2Vec (one op is the context of one source
+ * node, i.e. a walk of window steps) on power-law graphs of growing size, so that the
+ * cost of the cache misses of the larger graphs shows. The sources are drawn at random.
+ *
+ * @author dganguly
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SamplingBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int nodes;
+
+    @Param({"10"})
+    int avgDegree;
+
+    @Param({"10", "80"})
+    int window;
+
+    @Param({"1"})
+    float p;
+
+    @Param({"0.5"})
+    float q;
+
+    Node2Vec n2v;
+
+    @Setup
+    public void setup(BenchmarkParams params) throws IOException {
+        // only what the benchmark at hand needs (the multi-hop contexts or the alias tables)
+        boolean adj = params.getBenchmark().endsWith("adjSampling");
+        n2v = SyntheticData.load(SyntheticData.powerLawGraph(nodes, avgDegree), !adj, p, q);
+        n2v.window = window;
+    }
+
+    @State(Scope.Thread)
+    public static class Walker {
+        Word2VecRandom next_random;
+        int[] contextBuff = new int[Node2Vec.MAX_CONTEXT_PATH_LEN];
+
+        @Setup
+        public void setup(ThreadParams thread) {
+            next_random = new Word2VecRandom(Node2Vec.SEED + thread.getThreadIndex());
+        }
+
+        int nextSource(int n) {
+            next_random.next();
+            return next_random.remainder(n);
+        }
+    }
+
+    @Benchmark
+    public int pqSampling(Walker walker) {
+        return n2v.pqSampling(walker.nextSource(n2v.vocab_size), walker.next_random, walker.contextBuff);
+    }
+
+    @Benchmark
+    public int adjSampling(Walker walker) {
+        return n2v.adjSampling(walker.nextSource(n2v.vocab_size), walker.next_random, walker.contextBuff);
+    }
+}
@@ -0,0 +1,103 @@
+package com.ibm.node2vec;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Skip-gram training throughput: one op trains on the walks (pqSampling) of BLOCK
+ * consecutive source nodes, and the pairs counter gives the (source, context) pairs
+ * per second, each pair being 1 + negative dot products and updates of the vectors.
+ * Run with -t 1,2,4... for the scaling of the lock-free (Hogwild) updates: the pairs
+ * are the total of all the threads, so the pairs per thread are pairs / threads.
+ *
+ * @author dganguly
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+public class SkipgramBenchmark {
+    static final int BLOCK = 64;
+
+    @Param({"10000", "100000", "1000000"})
+    int nodes;
+
+    @Param({"10"})
+    int avgDegree;
+
+    @Param({"64", "128"})
+    int dims;
+
+    @Param({"10"})
+    int window;
+
+    @Param({"5"})
+    int negative;
+
+    @Param({"auto"})
+    String kernel;
+
+    Node2Vec n2v;
+
+    @Setup
+    public void setup() throws IOException {
+        n2v = SyntheticData.load(SyntheticData.powerLawGraph(nodes, avgDegree), true, 1, 0.5f);
+        n2v.layer1_size = dims;
+        n2v.window = window;
+        n2v.negative = negative;
+        n2v.kernel = DotKernel.forName(kernel);
+        n2v.alpha_decay = false; // the same updates throughout the measurement
+        n2v.InitNet();
+        n2v.InitUnigramTable();
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        Word2VecRandom next_random;
+        int[] contextBuff = new int[Node2Vec.MAX_CONTEXT_PATH_LEN];
+        float[] neu1e;
+        int next; // first source node of the next block
+
+        @Setup
+        public void setup(SkipgramBenchmark bench, ThreadParams thread) {
+            next_random = new Word2VecRandom(Node2Vec.SEED + thread.getThreadIndex());
+            neu1e = new float[bench.dims];
+            // the threads start apart, as the partitions of Node2Vec.skipgram() do
+            next = (int)((long)bench.n2v.vocab_size * thread.getThreadIndex() / thread.getThreadCount());
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long pairs;
+
+        @Setup(Level.Iteration)
+        public void reset() { pairs = 0; }
+    }
+
+    @Benchmark
+    public long skipgram(Worker worker, Counters counters) {
+        int start = worker.next, end = Math.min(n2v.vocab_size, start + BLOCK);
+        worker.next = end == n2v.vocab_size? 0 : end;
+        long pairs = n2v.skipgram(start, end, worker.next_random, worker.contextBuff, worker.neu1e);
+        counters.pairs += pairs;
+        return pairs;
+    }
+}
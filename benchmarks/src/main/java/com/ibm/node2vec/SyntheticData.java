@@ -0,0 +1,109 @@
+package com.ibm.node2vec;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Input files for the benchmarks, generated from a seed so that every run (and every
+ * fork) sees the same data. They are written to the directory of the system property
+ * node2vec.bench.dir (java.io.tmpdir by default) and reused when already there, as the
+ * larger ones take a while to write.
+ *
+ * @author dganguly
+ */
+final class SyntheticData {
+    static final long SEED = 123456;
+
+    private SyntheticData() {}
+
+    static File dir() {
+        File dir = new File(System.getProperty("node2vec.bench.dir", System.getProperty("java.io.tmpdir")));
+        dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * An undirected graph with a power-law degree distribution (preferential attachment,
+     * as in the Barabasi-Albert model), as an edge list file: node v > 0 is linked to
+     * avgDegree/2 earlier nodes, each drawn with a probability proportional to its
+     * current degree. Nodes are named by their numbers, as in the LFR graphs.
+     */
+    static synchronized File powerLawGraph(int numNodes, int avgDegree) throws IOException {
+        File file = new File(dir(), String.format("node2vec-bench-graph-%d-%d.txt", numNodes, avgDegree));
+        if (file.length() > 0)
+            return file;
+
+        int m = Math.max(1, avgDegree / 2);
+        int[] ends = new int[2 * m * numNodes]; // both end-points of every edge so far
+        int numEnds = 0;
+        Random rnd = new Random(SEED);
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir());
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.US_ASCII), 1 << 16)) {
+            for (int v = 1; v < numNodes; v++) {
+                int edges = Math.min(v, m), from = numEnds;
+                for (int e = 0; e < edges; e++) {
+                    // drawn among the end-points of the earlier nodes only
+                    int u = from == 0? 0 : ends[rnd.nextInt(from)];
+                    out.write(Integer.toString(v));
+                    out.write('\t');
+                    out.write(Integer.toString(u));
+                    out.write("\t1\n");
+                    ends[numEnds++] = u;
+                    ends[numEnds++] = v;
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * Random vectors (with components drawn from a standard normal) in the text format
+     * of Node2Vec, one line per node: its name and the components.
+     */
+    static synchronized File vectors(int numNodes, int dims) throws IOException {
+        File file = new File(dir(), String.format("node2vec-bench-vecs-%d-%d.txt", numNodes, dims));
+        if (file.length() > 0)
+            return file;
+
+        Random rnd = new Random(SEED);
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir());
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.US_ASCII), 1 << 16)) {
+            for (int v = 0; v < numNodes; v++) {
+                out.write(Integer.toString(v));
+                for (int c = 0; c < dims; c++)
+                    out.write(String.format(" %f", (float)rnd.nextGaussian()));
+                out.write('\n');
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * A Node2Vec (with the defaults of its fields, not trained) that has loaded the
+     * graph: the vocab, the CSR graph and the walk sampler of pqSampling, or the
+     * multi-hop contexts of adjSampling if pqsampling is false.
+     */
+    static Node2Vec load(File graph, boolean pqsampling, float p, float q) throws IOException {
+        Node2Vec n2v = new Node2Vec();
+        n2v.debug_mode = 0;
+        n2v.directed = false;
+        n2v.pqsampling = pqsampling;
+        n2v.p1 = p;
+        n2v.q1 = q;
+        n2v.initTables();
+        n2v.setInput(new FileInputStream(graph));
+        n2v.LearnVocabFromTrainFile();
+        return n2v;
+    }
+}
@@ -52,10 +52,9 @@ fi
 
 mvn compile
 
-mvn exec:java@node2vec -Dexec.args="-props node2vec-comm.properties -trace 2 -iter 20 -window 80 -size 64 -directed 0 -p 10  -q 0.5 -min-count 1 -ns 5" 
+mvn -pl node2vec exec:java@node2vec -Dexec.args="-props node2vec-comm.properties -trace 2 -iter 20 -window 80 -size 64 -directed 0 -p 10  -q 0.5 -min-count 1 -ns 5" 
 
-mvn exec:java@kmeans -Dexec.args="node2vec-comm.properties" 
+mvn -pl node2vec exec:java@kmeans -Dexec.args="node2vec-comm.properties" 
 
-GECMI=./clusteval/GenConvNMI-master/bin/Release/gecmi
-$GECMI $GT $OUTFILE.kmeans.$NUMCLUSTERS 
+mvn -pl node2vec exec:java@clusteval -Dexec.args="$GT $OUTFILE.kmeans.$NUMCLUSTERS $GRAPHFILE"
 
@@ -0,0 +1,187 @@
+package com.ibm.clusteval;
+
+import java.io.File;
+import java.util.stream.IntStream;
+
+/**
+ * Compares a clustering with a ground truth (both possibly overlapping), in the JVM
+ * and in parallel, from their sparse contingency table:
+ * <ul>
+ * <li>NMI, normalized by the mean (and by the max) of the entropies, over the joint
+ * distribution of the table (for a partition, that of a random node; a node in several
+ * clusters counts once for each pair of its clusters);</li>
+ * <li>overlapping NMI (ONMI) of Lancichinetti, Fortunato and Kertesz (2009), and its
+ * normalization by the max entropy of McDaid, Greene and Hurley (2011), where each
+ * cluster is a binary variable over the nodes and is compared with the cluster of the
+ * other side that explains it best; as in McDaid's onmi, only clusters that share a
+ * node are compared (the other pairs are all but independent);</li>
+ * <li>the adjusted Rand index (ARI), by counting pairs in the cells of the table.</li>
+ * </ul>
+ * Only the nodes in both clusterings are compared. With a graph, the modularity of
+ * each clustering is also reported.
+ *
+ * @author dganguly
+ */
+public class ClusterEval {
+    final Contingency table;
+
+    public ClusterEval(Clustering truth, Clustering found) {
+        table = new Contingency(truth, found);
+    }
+
+    public Contingency table() { return table; }
+
+    // -p log p, for p = count/total
+    static double h(double count, double total) {
+        if (count <= 0 || count >= total)
+            return 0;
+        double p = count / total;
+        return -p * Math.log(p);
+    }
+
+    static double entropy(long[] sums, double total) {
+        return IntStream.range(0, sums.length).parallel().mapToDouble(i -> h(sums[i], total)).sum();
+    }
+
+    // the mutual information of the table (in nats)
+    double mutualInformation(double total) {
+        return IntStream.range(0, table.numCells()).parallel().mapToDouble(cell -> {
+            double c = table.counts[cell];
+            return c / total * Math.log(c * total
+                    / ((double)table.rowSums[table.rows[cell]] * table.colSums[table.cols[cell]]));
+        }).sum();
+    }
+
+    /** NMI = 2 I(A;B) / (H(A) + H(B)) (1 if both entropies are 0). */
+    public double nmi() {
+        double total = table.total();
+        double ha = entropy(table.rowSums, total), hb = entropy(table.colSums, total);
+        if (ha + hb == 0)
+            return 1;
+        return 2 * mutualInformation(total) / (ha + hb);
+    }
+
+    /** NMI = I(A;B) / max(H(A), H(B)) (1 if both entropies are 0). */
+    public double nmiMax() {
+        double total = table.total();
+        double ha = entropy(table.rowSums, total), hb = entropy(table.colSums, total);
+        if (Math.max(ha, hb) == 0)
+            return 1;
+        return mutualInformation(total) / Math.max(ha, hb);
+    }
+
+    // The entropy H(X_i) of each cluster i of one side, as a binary variable over the
+    // n common nodes, and H(X_i|Y), the min of H(X_i|Y_j) over the clusters j of the
+    // other side that overlap i and pass the test of Lancichinetti et al. (H(X_i) if
+    // none does). The cells of cluster i are cells[start[i], start[i+1]), through
+    // order[] if it is not null.
+    double[][] conditionalEntropies(int[] sizes, int[] otherSizes, int[] start, int[] order, int[] other) {
+        double n = table.numNodes();
+        double[] hx = new double[sizes.length], hxy = new double[sizes.length];
+        IntStream.range(0, sizes.length).parallel().forEach(i -> {
+            double x = sizes[i];
+            hx[i] = h(x, n) + h(n - x, n);
+            double best = hx[i];
+            for (int k = start[i]; k < start[i + 1]; k++) {
+                int cell = order == null? k : order[k];
+                double y = otherSizes[other[cell]], d = table.counts[cell];
+                double a = n - x - y + d, b = y - d, c = x - d;
+                if (h(a, n) + h(d, n) >= h(b, n) + h(c, n))
+                    best = Math.min(best, h(a, n) + h(b, n) + h(c, n) + h(d, n) - h(y, n) - h(n - y, n));
+            }
+            hxy[i] = best;
+        });
+        return new double[][] { hx, hxy };
+    }
+
+    // the mean of H(X_i|Y)/H(X_i) over the clusters of non-zero entropy
+    static double normalizedConditional(double[][] h) {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < h[0].length; i++) {
+            if (h[0][i] > 0) {
+                sum += h[1][i] / h[0][i];
+                count++;
+            }
+        }
+        return count == 0? 0 : sum / count;
+    }
+
+    static double sum(double[] values) {
+        double sum = 0;
+        for (double v : values)
+            sum += v;
+        return sum;
+    }
+
+    double[][] rowEntropies() {
+        return conditionalEntropies(table.rowSizes, table.colSizes, table.rowStart, null, table.cols);
+    }
+
+    double[][] colEntropies() {
+        return conditionalEntropies(table.colSizes, table.rowSizes, table.colStart, table.byCol, table.rows);
+    }
+
+    /** ONMI = 1 - (H(X|Y)_norm + H(Y|X)_norm) / 2, of Lancichinetti et al. */
+    public double onmiLfk() {
+        return 1 - 0.5 * (normalizedConditional(rowEntropies()) + normalizedConditional(colEntropies()));
+    }
+
+    /** ONMI = I(X:Y) / max(H(X), H(Y)), of McDaid et al. (1 if both entropies are 0). */
+    public double onmiMax() {
+        double[][] x = rowEntropies(), y = colEntropies();
+        double hx = sum(x[0]), hy = sum(y[0]);
+        if (Math.max(hx, hy) == 0)
+            return 1;
+        double mutual = 0.5 * (hx - sum(x[1]) + hy - sum(y[1]));
+        return mutual / Math.max(hx, hy);
+    }
+
+    static double comb2(double n) { return n * (n - 1) / 2; }
+
+    /** The adjusted Rand index (1 if both sides are a single cluster, or all singletons). */
+    public double ari() {
+        double index = IntStream.range(0, table.numCells()).parallel()
+                .mapToDouble(cell -> comb2(table.counts[cell])).sum();
+        double a = 0, b = 0;
+        for (long s : table.rowSums)
+            a += comb2(s);
+        for (long s : table.colSums)
+            b += comb2(s);
+        double pairs = comb2(table.total());
+        double expected = pairs == 0? 0 : a * b / pairs;
+        double max = 0.5 * (a + b);
+        if (max == expected)
+            return 1;
+        return (index - expected) / (max - expected);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: ClusterEval <ground-truth community list> <clustering> [<graph file>]");
+            return;
+        }
+
+        try {
+            NodeIds ids = new NodeIds();
+            Clustering truth = Clustering.read(new File(args[0]), ids, Clustering.Format.CLUSTERS);
+            Clustering found = Clustering.read(new File(args[1]), ids);
+            Graph graph = args.length > 2? Graph.read(new File(args[2]), ids) : null;
+
+            ClusterEval eval = new ClusterEval(truth, found);
+            System.out.println("Nodes: " + eval.table().numNodes() + " common, of " + ids.size());
+            System.out.println("Clusters: " + truth.numClusters() + " (ground truth), " + found.numClusters()
+                    + (truth.isDisjoint() && found.isDisjoint()? "" : " (overlapping)"));
+            System.out.println(String.format("NMI: %.6f", eval.nmi()));
+            System.out.println(String.format("NMI_max: %.6f", eval.nmiMax()));
+            System.out.println(String.format("ONMI_LFK: %.6f", eval.onmiLfk()));
+            System.out.println(String.format("ONMI_max: %.6f", eval.onmiMax()));
+            System.out.println(String.format("ARI: %.6f", eval.ari()));
+            if (graph != null) {
+                System.out.println(String.format("Modularity: %.6f (ground truth), %.6f",
+                        graph.modularity(truth), graph.modularity(found)));
+            }
+        }
+        catch (Exception ex) { ex.printStackTrace(); }
+    }
+}
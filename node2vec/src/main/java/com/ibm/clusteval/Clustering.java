@@ -0,0 +1,167 @@
+package com.ibm.clusteval;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A clustering of nodes, possibly overlapping (a node may be in several clusters),
+ * over the int ids of a NodeIds. The clusters of node v are the sorted run
+ * clusters[offsets[v], offsets[v+1]) (empty if v is in none, or if v got its id after
+ * this clustering was read).
+ *
+ * Either format written by Node2VecClusterer can be read: one cluster per line (the
+ * names of its nodes separated by whitespace; this is also the format of the ground
+ * truth community lists), or one node per line (its name, a tab and its cluster
+ * number). The format can be given, or else a file is taken to be in the latter if
+ * its first line is two tokens separated by a tab, the second an integer. A community
+ * list whose first community has two (numeric) members looks the same, so the ground
+ * truth should be read as Format.CLUSTERS.
+ *
+ * @author dganguly
+ */
+public final class Clustering {
+    final int numNodes;
+    final int numClusters;
+    final int[] offsets;
+    final int[] clusters;
+
+    Clustering(int numNodes, int numClusters, int[] offsets, int[] clusters) {
+        this.numNodes = numNodes;
+        this.numClusters = numClusters;
+        this.offsets = offsets;
+        this.clusters = clusters;
+    }
+
+    /** The number of clusters (numbered from 0). */
+    public int numClusters() { return numClusters; }
+
+    /** The number of clusters of a node. */
+    public int numClustersOf(int node) {
+        return node < numNodes? offsets[node + 1] - offsets[node] : 0;
+    }
+
+    /** Cluster j (in increasing order) of a node, for j < numClustersOf(node). */
+    public int clusterOf(int node, int j) {
+        return clusters[offsets[node] + j];
+    }
+
+    /** Whether no node is in more than one cluster. */
+    public boolean isDisjoint() {
+        for (int v = 0; v < numNodes; v++) {
+            if (offsets[v + 1] - offsets[v] > 1)
+                return false;
+        }
+        return true;
+    }
+
+    /** The file formats: one cluster per line, or the cluster of one node per line. */
+    public enum Format { CLUSTERS, LABELS }
+
+    /** Reads a clustering, guessing its format from the first line, giving ids to the names of its nodes. */
+    public static Clustering read(File file, NodeIds ids) throws IOException {
+        return read(file, ids, null);
+    }
+
+    /** Reads a clustering in the given format (guessed if null), giving ids to the names of its nodes. */
+    public static Clustering read(File file, NodeIds ids, Format format) throws IOException {
+        Builder builder = new Builder();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            String line = br.readLine();
+            if (format == null)
+                format = guessFormat(line);
+
+            if (format == Format.LABELS) {
+                Map<String, Integer> clusterIds = new HashMap<>();
+                for (; line != null; line = br.readLine()) {
+                    String[] tokens = line.trim().split("\\s+");
+                    if (tokens.length < 2)
+                        continue;
+                    Integer c = clusterIds.get(tokens[1]);
+                    if (c == null) {
+                        c = clusterIds.size();
+                        clusterIds.put(tokens[1], c);
+                    }
+                    builder.add(ids.id(tokens[0]), c);
+                }
+                builder.numClusters = clusterIds.size();
+            }
+            else {
+                int c = 0;
+                for (; line != null; line = br.readLine(), c++) {
+                    for (String node : line.trim().split("\\s+")) {
+                        if (!node.isEmpty())
+                            builder.add(ids.id(node), c);
+                    }
+                }
+                builder.numClusters = c;
+            }
+        }
+        return builder.build(ids.size());
+    }
+
+    // LABELS if the line is two tokens separated by a tab, the second an integer
+    static Format guessFormat(String line) {
+        String[] first = line == null? new String[0] : line.trim().split("\\s+");
+        if (first.length != 2 || line.indexOf('\t') < 0)
+            return Format.CLUSTERS;
+        try {
+            Integer.parseInt(first[1]);
+            return Format.LABELS;
+        }
+        catch (NumberFormatException ex) {
+            return Format.CLUSTERS;
+        }
+    }
+
+    /** Collects (node, cluster) memberships, in any order and possibly repeated. */
+    public static final class Builder {
+        int[] nodes = new int[1024], clusters = new int[1024];
+        int size;
+        int numClusters;
+
+        public void add(int node, int cluster) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * size);
+                clusters = Arrays.copyOf(clusters, 2 * size);
+            }
+            nodes[size] = node;
+            clusters[size++] = cluster;
+            numClusters = Math.max(numClusters, cluster + 1);
+        }
+
+        /** The clustering of the nodes [0, numNodes). */
+        public Clustering build(int numNodes) {
+            // counting sort by node, then sort and dedupe the clusters of each node
+            int[] offsets = new int[numNodes + 1];
+            for (int i = 0; i < size; i++)
+                offsets[nodes[i] + 1]++;
+            for (int v = 0; v < numNodes; v++)
+                offsets[v + 1] += offsets[v];
+            int[] sorted = new int[size];
+            int[] next = Arrays.copyOf(offsets, numNodes);
+            for (int i = 0; i < size; i++)
+                sorted[next[nodes[i]]++] = clusters[i];
+
+            int[] compact = new int[numNodes + 1];
+            int len = 0;
+            for (int v = 0; v < numNodes; v++) {
+                int from = offsets[v], to = offsets[v + 1];
+                Arrays.sort(sorted, from, to);
+                compact[v] = len;
+                for (int i = from; i < to; i++) {
+                    if (i == from || sorted[i] != sorted[i - 1])
+                        sorted[len++] = sorted[i];
+                }
+            }
+            compact[numNodes] = len;
+            return new Clustering(numNodes, numClusters, compact, Arrays.copyOf(sorted, len));
+        }
+    }
+}
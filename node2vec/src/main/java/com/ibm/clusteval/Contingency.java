@@ -0,0 +1,114 @@
+package com.ibm.clusteval;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The contingency table of two clusterings A and B over the nodes they both cluster
+ * (the common nodes), stored sparse: only the non-zero cells, sorted by row (cluster
+ * of A) then column (cluster of B), with the start of each row; and the same cells
+ * by column. A common node adds 1 to cell (a, b) for each cluster a of A and b of B
+ * it is in, so that a cell is the size of the intersection of two clusters.
+ *
+ * The table is built in parallel: each common node writes its cells as longs (row,
+ * column) into its own range of an array, which is then sorted (Arrays.parallelSort)
+ * and run-length encoded.
+ *
+ * @author dganguly
+ */
+public final class Contingency {
+    final int numRows, numCols;
+    final int numNodes; // common nodes
+    final int[] rows, cols, counts; // the cells, by row then column
+    final int[] rowStart; // the cells of row a are [rowStart[a], rowStart[a+1])
+    final int[] byCol; // the cells by column then row (indexes of cells)
+    final int[] colStart;
+    final long[] rowSums, colSums; // sums of the cells
+    final int[] rowSizes, colSizes; // common nodes in each cluster
+
+    public Contingency(Clustering a, Clustering b) {
+        numRows = a.numClusters();
+        numCols = b.numClusters();
+        int n = Math.max(a.numNodes, b.numNodes);
+
+        // the common nodes, and where the cells of each start
+        int[] common = IntStream.range(0, n).parallel()
+                .filter(v -> a.numClustersOf(v) > 0 && b.numClustersOf(v) > 0).toArray();
+        numNodes = common.length;
+        long[] start = new long[common.length + 1];
+        for (int i = 0; i < common.length; i++)
+            start[i + 1] = start[i] + (long)a.numClustersOf(common[i]) * b.numClustersOf(common[i]);
+        if (start[common.length] > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Too many memberships to tabulate: " + start[common.length]);
+
+        long[] keys = new long[(int)start[common.length]];
+        IntStream.range(0, common.length).parallel().forEach(i -> {
+            int v = common[i], pos = (int)start[i];
+            for (int j = 0, na = a.numClustersOf(v); j < na; j++) {
+                long row = (long)a.clusterOf(v, j) << 32;
+                for (int k = 0, nb = b.numClustersOf(v); k < nb; k++)
+                    keys[pos++] = row | b.clusterOf(v, k);
+            }
+        });
+        Arrays.parallelSort(keys);
+
+        int numCells = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1])
+                numCells++;
+        }
+        rows = new int[numCells];
+        cols = new int[numCells];
+        counts = new int[numCells];
+        for (int i = 0, cell = -1; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                cell++;
+                rows[cell] = (int)(keys[i] >>> 32);
+                cols[cell] = (int)keys[i];
+            }
+            counts[cell]++;
+        }
+
+        rowStart = new int[numRows + 1];
+        colStart = new int[numCols + 1];
+        rowSums = new long[numRows];
+        colSums = new long[numCols];
+        for (int cell = 0; cell < numCells; cell++) {
+            rowStart[rows[cell] + 1]++;
+            colStart[cols[cell] + 1]++;
+            rowSums[rows[cell]] += counts[cell];
+            colSums[cols[cell]] += counts[cell];
+        }
+        for (int r = 0; r < numRows; r++)
+            rowStart[r + 1] += rowStart[r];
+        for (int c = 0; c < numCols; c++)
+            colStart[c + 1] += colStart[c];
+        byCol = new int[numCells];
+        int[] next = Arrays.copyOf(colStart, numCols);
+        for (int cell = 0; cell < numCells; cell++)
+            byCol[next[cols[cell]]++] = cell;
+
+        rowSizes = new int[numRows];
+        colSizes = new int[numCols];
+        for (int v : common) {
+            for (int j = 0, na = a.numClustersOf(v); j < na; j++)
+                rowSizes[a.clusterOf(v, j)]++;
+            for (int k = 0, nb = b.numClustersOf(v); k < nb; k++)
+                colSizes[b.clusterOf(v, k)]++;
+        }
+    }
+
+    /** The number of nodes in both clusterings. */
+    public int numNodes() { return numNodes; }
+
+    /** The number of non-zero cells. */
+    public int numCells() { return counts.length; }
+
+    /** The sum of the cells (the number of nodes for disjoint clusterings). */
+    public long total() {
+        long total = 0;
+        for (long s : rowSums)
+            total += s;
+        return total;
+    }
+}
@@ -0,0 +1,129 @@
+package com.ibm.clusteval;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * An undirected weighted edge list, read from a graph file (each line is
+ * "src \t dst [\t weight]", the weight being 1 if absent), over the int ids of a
+ * NodeIds, for the modularity of clusterings of its nodes.
+ *
+ * @author dganguly
+ */
+public final class Graph {
+    static final int CHUNK = 1 << 16; // edges per task
+
+    final int[] src, dst;
+    final double[] weight;
+    final int numEdges;
+    final double[] degree; // weighted, by node id
+    final double totalWeight; // m
+
+    Graph(int[] src, int[] dst, double[] weight, int numEdges, int numNodes) {
+        this.src = src;
+        this.dst = dst;
+        this.weight = weight;
+        this.numEdges = numEdges;
+
+        degree = new double[numNodes];
+        double m = 0;
+        for (int e = 0; e < numEdges; e++) {
+            degree[src[e]] += weight[e];
+            degree[dst[e]] += weight[e];
+            m += weight[e];
+        }
+        totalWeight = m;
+    }
+
+    public int numEdges() { return numEdges; }
+
+    public static Graph read(File file, NodeIds ids) throws IOException {
+        int[] src = new int[1024], dst = new int[1024];
+        double[] weight = new double[1024];
+        int size = 0;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens.length < 2)
+                    continue;
+                if (size == src.length) {
+                    src = Arrays.copyOf(src, 2 * size);
+                    dst = Arrays.copyOf(dst, 2 * size);
+                    weight = Arrays.copyOf(weight, 2 * size);
+                }
+                src[size] = ids.id(tokens[0]);
+                dst[size] = ids.id(tokens[1]);
+                weight[size++] = tokens.length > 2? Double.parseDouble(tokens[2]) : 1;
+            }
+        }
+        return new Graph(src, dst, weight, size, ids.size());
+    }
+
+    /**
+     * The modularity of a clustering, in the form for overlapping communities of Shen
+     * et al. (2009), where a node in k clusters belongs to each with weight 1/k (which
+     * is Newman's modularity for a partition):
+     * Q = sum_c [ L_c/m - (D_c/2m)^2 ], with L_c the sum over the edges (u, v) of
+     * w_uv a_uc a_vc, and D_c the sum over the nodes of deg(u) a_uc. Nodes in no
+     * cluster add to the degrees and to m only. The edges are processed in parallel
+     * chunks, each with its own array of sums.
+     */
+    public double modularity(Clustering clustering) {
+        int k = clustering.numClusters();
+        double m = totalWeight;
+        if (m == 0)
+            return 0;
+        int numChunks = (numEdges + CHUNK - 1) / CHUNK;
+
+        double[][] partial = IntStream.range(0, numChunks).parallel().mapToObj(chunk -> {
+            double[] sums = new double[k];
+            int from = chunk * CHUNK, to = Math.min(numEdges, from + CHUNK);
+            for (int e = from; e < to; e++) {
+                int u = src[e], v = dst[e];
+                int nu = clustering.numClustersOf(u), nv = clustering.numClustersOf(v);
+                if (nu == 0 || nv == 0)
+                    continue;
+                double shared = weight[e] / ((double)nu * nv);
+                for (int i = 0, j = 0; i < nu && j < nv; ) { // merge the sorted clusters
+                    int cu = clustering.clusterOf(u, i), cv = clustering.clusterOf(v, j);
+                    if (cu == cv) {
+                        sums[cu] += shared;
+                        i++;
+                        j++;
+                    }
+                    else if (cu < cv)
+                        i++;
+                    else
+                        j++;
+                }
+            }
+            return sums;
+        }).toArray(double[][]::new);
+
+        double[] sums = new double[k];
+        for (double[] p : partial) {
+            for (int c = 0; c < k; c++)
+                sums[c] += p[c];
+        }
+
+        double[] degreeSums = new double[k];
+        for (int u = 0; u < degree.length; u++) {
+            int nu = clustering.numClustersOf(u);
+            for (int i = 0; i < nu; i++)
+                degreeSums[clustering.clusterOf(u, i)] += degree[u] / nu;
+        }
+        double q = 0;
+        for (int c = 0; c < k; c++) {
+            double d = degreeSums[c] / (2 * m);
+            q += sums[c] / m - d * d;
+        }
+        return q;
+    }
+}
@@ -0,0 +1,35 @@
+package com.ibm.clusteval;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense int ids for node names, given out in order of first appearance and shared by
+ * the clusterings (and graph) compared with each other, so that the evaluation itself
+ * works on int arrays only.
+ *
+ * @author dganguly
+ */
+public final class NodeIds {
+    final Map<String, Integer> ids = new HashMap<>();
+    final List<String> names = new ArrayList<>();
+
+    /** The id of a name (a new one if it hasn't been seen yet). */
+    public int id(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /** The name of an id. */
+    public String name(int id) { return names.get(id); }
+
+    /** The number of ids given out so far. */
+    public int size() { return names.size(); }
+}
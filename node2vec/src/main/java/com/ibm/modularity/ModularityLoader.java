@@ -0,0 +1,170 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.ibm.modularity;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Loads a modularity output file, where each line is a community: the names of its
+ * nodes, separated by spaces. A node may be in more than one community.
+ *
+ * The communities of each node are kept as a sorted array of community numbers (the
+ * line numbers, from 0). For the trainer, index() lays them out by its int node ids:
+ * a single array of the community of each node when the partition is disjoint, or
+ * else the sorted communities of all the nodes one after the other (with the offset
+ * of each node), so that overlapInCommunity(int, int) is a comparison of two ints or
+ * a merge of two short sorted runs, with no lookup or allocation.
+ *
+ * @author dganguly
+ */
+public class ModularityLoader {
+    static final int[] NONE = new int[0];
+
+    String modularityOutputFile;
+    Map<String, int[]> nodeToCommunity;
+    int numCommunities;
+    boolean disjoint = true;
+
+    // the communities by the int ids of index(): community[] if disjoint (-1 for none),
+    // else the communities of node i at memberships[offsets[i], offsets[i+1])
+    int[] community;
+    int[] offsets;
+    int[] memberships;
+
+    public ModularityLoader(String modularityOutputFile) throws Exception {
+        this.modularityOutputFile = modularityOutputFile;
+
+        List<String> communities = FileUtils.readLines(new File(modularityOutputFile), Charset.defaultCharset());
+
+        Map<String, List<Integer>> assigned = new HashMap<>();
+        int communityIndex = 0;
+
+        for (String community: communities) {
+            String[] nodes = community.trim().split("\\s+");
+            for (String node: nodes) {
+                if (node.isEmpty())
+                    continue;
+                List<Integer> assignedCommunitiesForThisNode = assigned.get(node);
+
+                if (assignedCommunitiesForThisNode == null) {
+                    assignedCommunitiesForThisNode = new ArrayList<>(1);
+                    assigned.put(node, assignedCommunitiesForThisNode);
+                }
+                assignedCommunitiesForThisNode.add(communityIndex);
+            }
+            communityIndex++;
+        }
+        numCommunities = communityIndex;
+
+        // sorted (in line order already) and without duplicates
+        nodeToCommunity = new HashMap<>(assigned.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> e : assigned.entrySet()) {
+            List<Integer> list = e.getValue();
+            int[] comms = new int[list.size()];
+            int size = 0;
+            for (int c : list) {
+                if (size == 0 || comms[size - 1] != c)
+                    comms[size++] = c;
+            }
+            if (size > 1)
+                disjoint = false;
+            nodeToCommunity.put(e.getKey(), size == comms.length? comms : Arrays.copyOf(comms, size));
+        }
+    }
+
+    /** The number of communities (lines of the file). */
+    public int numCommunities() { return numCommunities; }
+
+    /** Whether no node is in more than one community. */
+    public boolean isDisjoint() { return disjoint; }
+
+    /** The communities of a node, sorted (empty if it is in none). */
+    public int[] communities(String node) {
+        int[] comms = nodeToCommunity.get(node);
+        return comms == null? NONE : comms;
+    }
+
+    /**
+     * Indexes the communities by int node ids, for overlapInCommunity(int, int).
+     * @param nodes The name of each node id.
+     */
+    public void index(String[] nodes) {
+        if (disjoint) {
+            community = new int[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                int[] comms = communities(nodes[i]);
+                community[i] = comms.length == 0? -1 : comms[0];
+            }
+            offsets = memberships = null;
+            return;
+        }
+
+        offsets = new int[nodes.length + 1];
+        for (int i = 0; i < nodes.length; i++)
+            offsets[i + 1] = offsets[i] + communities(nodes[i]).length;
+        memberships = new int[offsets[nodes.length]];
+        for (int i = 0; i < nodes.length; i++) {
+            int[] comms = communities(nodes[i]);
+            System.arraycopy(comms, 0, memberships, offsets[i], comms.length);
+        }
+        community = null;
+    }
+
+    /** The community of a node id when the partition is disjoint (-1 if none); needs index(). */
+    public int communityOf(int node) { return community[node]; }
+
+    /** The number of communities of a node id; needs index(). */
+    public int numCommunitiesOf(int node) {
+        return community != null? (community[node] >= 0? 1 : 0) : offsets[node + 1] - offsets[node];
+    }
+
+    /** Community j (in increasing order) of a node id, for j < numCommunitiesOf(node); needs index(). */
+    public int communityOf(int node, int j) {
+        return community != null? community[node] : memberships[offsets[node] + j];
+    }
+
+    // Takes as argument a key node id (current node in node2vec) and a
+    // reference node id (one of the context nodes), as indexed by index().
+    // Returns true if they have a community in common, else false.
+    public boolean overlapInCommunity(int pivotNode, int refNode) {
+        if (community != null) {
+            int c = community[pivotNode];
+            return c >= 0 && c == community[refNode];
+        }
+        return overlap(memberships, offsets[pivotNode], offsets[pivotNode + 1],
+                memberships, offsets[refNode], offsets[refNode + 1]);
+    }
+
+    // Takes as argument a key node id (current node in node2vec) and a
+    // reference node id (one of the context nodes).
+    // Retrieves the communities of both... returns true if there's an overlap
+    // else false.
+    public boolean overlapInCommunity(String pivotNode, String refNode) {
+        int[] pivotComm = communities(pivotNode);
+        int[] refComm = communities(refNode);
+        return overlap(pivotComm, 0, pivotComm.length, refComm, 0, refComm.length);
+    }
+
+    // Whether the sorted runs a[aFrom, aTo) and b[bFrom, bTo) have an element in common
+    static boolean overlap(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+        while (aFrom < aTo && bFrom < bTo) {
+            if (a[aFrom] == b[bFrom])
+                return true;
+            if (a[aFrom] < b[bFrom])
+                aFrom++;
+            else
+                bFrom++;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+package com.ibm.node2vec;
+
+/**
+ * Walker's alias method (Vose's construction) for drawing from a discrete distribution
+ * in O(1) after an O(n) set-up.
+ *
+ * Besides the stand-alone table over a whole array of weights, the static methods build
+ * and sample tables stored in a slice [from, from+n) of larger flat arrays, so that many
+ * small tables (e.g. one per node of the graph) can share a pair of arrays instead of
+ * being allocated as separate objects.
+ *
+ * @author dganguly
+ */
+public final class AliasTable {
+    final float[] prob;
+    final int[] alias;
+
+    /**
+     * Builds the table from un-normalized, non-negative weights.
+     * @param weights The weights; index i is drawn with prob weights[i]/sum(weights).
+     */
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        prob = new float[n];
+        alias = new int[n];
+        build(weights.clone(), n, prob, alias, 0, new int[n], new int[n]);
+    }
+
+    public int size() { return prob.length; }
+
+    /** Draws an index in [0, size()) */
+    public int sample(Word2VecRandom rnd) {
+        return sample(prob, alias, 0, prob.length, rnd);
+    }
+
+    /**
+     * Builds an alias table for the weights w[0..n) into prob[to..to+n) and alias[to..to+n).
+     * The alias entries are relative to 'to' (i.e. in [0, n)).
+     * w, small and large are scratch arrays of length at least n; w is overwritten.
+     * If all the weights are zero, the table is uniform.
+     */
+    static void build(double[] w, int n, float[] prob, int[] alias, int to, int[] small, int[] large) {
+        double sum = 0;
+        for (int i = 0; i < n; i++) sum += w[i];
+
+        int ns = 0, nl = 0;
+        for (int i = 0; i < n; i++) {
+            w[i] = sum > 0? w[i] * n / sum : 1;
+            if (w[i] < 1) small[ns++] = i;
+            else large[nl++] = i;
+        }
+
+        while (ns > 0 && nl > 0) {
+            int s = small[--ns];
+            int l = large[--nl];
+            prob[to + s] = (float)w[s];
+            alias[to + s] = l;
+            w[l] = (w[l] + w[s]) - 1;
+            if (w[l] < 1) small[ns++] = l;
+            else large[nl++] = l;
+        }
+        // whatever is left is 1 up to rounding errors
+        while (nl > 0) { int l = large[--nl]; prob[to + l] = 1; alias[to + l] = l; }
+        while (ns > 0) { int s = small[--ns]; prob[to + s] = 1; alias[to + s] = s; }
+    }
+
+    /** Draws from the table stored at [from, from+n); returns an index in [0, n). */
+    static int sample(float[] prob, int[] alias, int from, int n, Word2VecRandom rnd) {
+        int k = rnd.nextInt(n);
+        return rnd.nextDouble() < prob[from + k]? k : alias[from + k];
+    }
+}
@@ -0,0 +1,189 @@
+package com.ibm.node2vec;
+
+/**
+ * Precomputed sampling engine for the p-q biased (second order) random walks of node2vec,
+ * along the lines of the preprocessing of transition probabilities in the node2vec paper.
+ *
+ * The graph is a CSRGraph: the out-edges of node v are the positions
+ * [offsets[v], offsets[v+1]) of targets and weights. A step of a walk is identified by
+ * the position of the edge it takes, so that the edge (t, v) just traversed selects the
+ * distribution of the next step from v.
+ *
+ * The unnormalized probability of moving from v to x, having come from t, is
+ * w(v,x) * delw, where (as in Node2Vec.pqSampling)
+ *   delw = q  if x == t             (VisitStatus.CASE_Q)
+ *          1  if x is a neighbour of t (VisitStatus.CASE_ONE)
+ *          p  otherwise             (VisitStatus.CASE_P)
+ *
+ * Two strategies are supported, chosen by a memory budget:
+ *  1. one alias table per edge (t, v) over the out-edges of v. Costs
+ *     sum over edges (t,v) of outdegree(v) entries, and then each step is O(1).
+ *  2. rejection sampling: propose x from the (first order) alias table of v and accept
+ *     it with prob delw/max(p, 1, q). Only needs one entry per edge; each step is O(1)
+ *     in expectation times the cost of the neighbour test (CSRGraph.hasEdge, which is
+ *     O(log d) or O(1) once the graph is sorted/indexed).
+ * In both cases there is one first order alias table per node, which is also used for
+ * the first step of a walk (where there is no previous edge).
+ *
+ * An instance is immutable once built and can be shared by any number of walkers,
+ * each with its own Word2VecRandom.
+ *
+ * @author dganguly
+ */
+public class BiasedWalkSampler {
+    // Bytes of a table entry (a float prob and an int alias)
+    static final int ENTRY_BYTES = 8;
+    // Fall back to an exact linear scan after these many rejections in a row
+    static final int MAX_REJECTIONS = 100;
+
+    final CSRGraph graph;
+    final int[] offsets;
+    final int[] targets;
+    final float[] weights;
+    final float p, q;
+    final float maxFactor;
+
+    // first order tables, one per node, laid out like the edges
+    final float[] nodeProb;
+    final int[] nodeAlias;
+
+    // second order tables, one per edge (null when using rejection sampling);
+    // the table of edge e is at [edgeTableOffsets[e], edgeTableOffsets[e+1])
+    int[] edgeTableOffsets;
+    float[] edgeProb;
+    int[] edgeAlias;
+
+    /**
+     * Builds the sampler.
+     * @param graph The graph to walk on.
+     * @param p Weight multiplier for moving away from the previous node.
+     * @param q Weight multiplier for returning to the previous node.
+     * @param memoryBudget Max number of bytes to spend on per-edge tables; if they
+     * don't fit, rejection sampling is used instead.
+     */
+    public BiasedWalkSampler(CSRGraph graph, float p, float q, long memoryBudget) {
+        this.graph = graph;
+        this.offsets = graph.offsets;
+        this.targets = graph.targets;
+        this.weights = graph.weights;
+        this.p = p;
+        this.q = q;
+        this.maxFactor = Math.max(1, Math.max(p, q));
+
+        int numNodes = offsets.length - 1;
+        int numEdges = offsets[numNodes];
+        int maxDegree = 0;
+        for (int v = 0; v < numNodes; v++)
+            maxDegree = Math.max(maxDegree, degree(v));
+
+        double[] w = new double[maxDegree];
+        int[] small = new int[maxDegree], large = new int[maxDegree];
+
+        nodeProb = new float[numEdges];
+        nodeAlias = new int[numEdges];
+        for (int v = 0; v < numNodes; v++) {
+            int from = offsets[v], n = degree(v);
+            for (int k = 0; k < n; k++) w[k] = weights[from + k];
+            AliasTable.build(w, n, nodeProb, nodeAlias, from, small, large);
+        }
+
+        long entries = 0;
+        for (int e = 0; e < numEdges; e++)
+            entries += degree(targets[e]);
+
+        if (entries <= Integer.MAX_VALUE && entries * ENTRY_BYTES <= memoryBudget)
+            buildEdgeTables((int)entries, w, small, large);
+    }
+
+    final int degree(int v) { return offsets[v + 1] - offsets[v]; }
+
+    /** Whether the per-edge tables were precomputed (otherwise, walks use rejection sampling). */
+    public boolean hasEdgeTables() { return edgeTableOffsets != null; }
+
+    /** Number of bytes taken up by the alias tables. */
+    public long memoryUsed() {
+        long bytes = (long)nodeProb.length * ENTRY_BYTES;
+        if (hasEdgeTables())
+            bytes += (long)edgeProb.length * ENTRY_BYTES + (long)edgeTableOffsets.length * 4;
+        return bytes;
+    }
+
+    void buildEdgeTables(int entries, double[] w, int[] small, int[] large) {
+        int numNodes = offsets.length - 1;
+        int numEdges = targets.length;
+        edgeTableOffsets = new int[numEdges + 1];
+        edgeProb = new float[entries];
+        edgeAlias = new int[entries];
+
+        int pos = 0;
+        for (int t = 0; t < numNodes; t++) {
+            for (int e = offsets[t]; e < offsets[t + 1]; e++) {
+                int v = targets[e];
+                int from = offsets[v], n = degree(v);
+                edgeTableOffsets[e] = pos;
+                for (int k = 0; k < n; k++)
+                    w[k] = weights[from + k] * factor(t, targets[from + k]);
+                AliasTable.build(w, n, edgeProb, edgeAlias, pos, small, large);
+                pos += n;
+            }
+        }
+        edgeTableOffsets[numEdges] = pos;
+    }
+
+    /** The p/q multiplier for stepping to x when the previous node was prev. */
+    float factor(int prev, int x) {
+        VisitStatus status = checkNeighbour(prev, x);
+        return status == VisitStatus.CASE_P? p : status == VisitStatus.CASE_ONE? 1 : q;
+    }
+
+    VisitStatus checkNeighbour(int prev, int x) {
+        if (prev == x)
+            return VisitStatus.CASE_Q;
+        return graph.hasEdge(prev, x)? VisitStatus.CASE_ONE : VisitStatus.CASE_P;
+    }
+
+    /**
+     * Samples the next step of a walk.
+     * @param prev The node visited before cur (cur itself on the first step).
+     * @param cur The current node.
+     * @param prevEdge Position of the edge (prev, cur), or -1 on the first step.
+     * @param rnd The walker's generator.
+     * @return The position of the sampled out-edge of cur, or -1 if cur has no out-edges.
+     */
+    public int step(int prev, int cur, int prevEdge, Word2VecRandom rnd) {
+        int from = offsets[cur], n = degree(cur);
+        if (n == 0)
+            return -1;
+
+        if (prevEdge >= 0 && edgeTableOffsets != null) {
+            int pos = edgeTableOffsets[prevEdge];
+            return from + AliasTable.sample(edgeProb, edgeAlias, pos, n, rnd);
+        }
+
+        for (int tries = 0; tries < MAX_REJECTIONS; tries++) {
+            int e = from + AliasTable.sample(nodeProb, nodeAlias, from, n, rnd);
+            if (rnd.nextDouble() * maxFactor < factor(prev, targets[e]))
+                return e;
+        }
+        // Very unlikely to get here (only if most of the mass is rejected);
+        // an independent exact draw keeps the distribution unchanged.
+        return exactStep(prev, cur, rnd);
+    }
+
+    // The original two pass method: O(outdegree(cur)) neighbour tests per step.
+    int exactStep(int prev, int cur, Word2VecRandom rnd) {
+        int from = offsets[cur], to = offsets[cur + 1];
+        double z = 0;
+        for (int e = from; e < to; e++)
+            z += weights[e] * factor(prev, targets[e]);
+
+        double x = rnd.nextDouble() * z;
+        double cumul_p = 0;
+        for (int e = from; e < to; e++) {
+            cumul_p += weights[e] * factor(prev, targets[e]);
+            if (x < cumul_p)
+                return e;
+        }
+        return to - 1;
+    }
+}
@@ -0,0 +1,259 @@
+package com.ibm.node2vec;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary format for node embeddings, meant to be memory-mapped instead of parsed.
+ * All the numbers are little-endian:
+ * <pre>
+ *  header:   magic "N2VB" (int), version (int), #rows (int), #dims (int), matrix offset (long)
+ *  id table: for each row, the length (int) and the UTF-8 bytes of the node id
+ *  padding:  up to the matrix offset (a multiple of 64)
+ *  matrix:   #rows x #dims float32, row after row
+ * </pre>
+ * Reading maps the matrix into FloatBuffers (in segments of less than 2GB) so that
+ * the rows are accessed directly in the page cache, without any parsing. The ids stay
+ * in the mapped id table too: the only heap structures are an int offset per row and
+ * an open-addressing hash of the rows by id (about 12 bytes per row in all), so that
+ * the vectors can be served off-heap (see WordVecs.mapBinaryFile).
+ *
+ * @author dganguly
+ */
+public final class BinaryVecFile implements VectorRows {
+    static final int MAGIC = 0x4256324E; // "N2VB" read as a little-endian int
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int ALIGNMENT = 64;
+
+    final int rows;
+    final int dims;
+    final ByteBuffer idTable;
+    final int[] idOffsets; // where the id of each row (its length, then its bytes) starts
+    final int[] slots; // rows hashed by id (-1 = empty), capacity a power of 2
+    final FloatBuffer[] segments;
+    final int rowsPerSegment;
+
+    BinaryVecFile(int rows, int dims, ByteBuffer idTable, FloatBuffer[] segments, int rowsPerSegment) {
+        this.rows = rows;
+        this.dims = dims;
+        this.idTable = idTable;
+        this.segments = segments;
+        this.rowsPerSegment = rowsPerSegment;
+
+        idOffsets = new int[rows];
+        slots = new int[Integer.highestOneBit(Math.max(1, 2 * rows - 1)) << 1];
+        Arrays.fill(slots, -1);
+        int mask = slots.length - 1;
+        int pos = 0;
+        for (int row = 0; row < rows; row++) {
+            idOffsets[row] = pos;
+            int len = idTable.getInt(pos);
+            int slot = hash(idTable, pos + 4, len) & mask;
+            while (slots[slot] != -1)
+                slot = (slot + 1) & mask;
+            slots[slot] = row;
+            pos += 4 + len;
+        }
+    }
+
+    static int hash(ByteBuffer buff, int from, int len) {
+        int h = 0;
+        for (int i = 0; i < len; i++)
+            h = h * 31 + buff.get(from + i);
+        return CSRGraph.mix(h);
+    }
+
+    @Override
+    public int rows() { return rows; }
+
+    @Override
+    public int dims() { return dims; }
+
+    /** The id of a row (decoded from the mapped id table). */
+    @Override
+    public String id(int row) {
+        int pos = idOffsets[row];
+        byte[] bytes = new byte[idTable.getInt(pos)];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = idTable.get(pos + 4 + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** The row of an id, or -1 if there is no such id. */
+    public int rowOf(String id) {
+        ByteBuffer key = ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8));
+        int len = key.limit();
+        int mask = slots.length - 1;
+        int slot = hash(key, 0, len) & mask;
+        int row;
+        while ((row = slots[slot]) != -1) {
+            if (idEquals(row, key, len))
+                return row;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    boolean idEquals(int row, ByteBuffer key, int len) {
+        int pos = idOffsets[row];
+        if (idTable.getInt(pos) != len)
+            return false;
+        for (int i = 0; i < len; i++) {
+            if (idTable.get(pos + 4 + i) != key.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    /** Component c of the vector at row. */
+    public float get(int row, int c) {
+        return segments[row / rowsPerSegment].get((row % rowsPerSegment) * dims + c);
+    }
+
+    /** Dot product of the vector at row with q[0, dims). */
+    @Override
+    public float dot(int row, float[] q) {
+        FloatBuffer segment = segments[row / rowsPerSegment];
+        int base = (row % rowsPerSegment) * dims;
+        float sum = 0;
+        for (int c = 0; c < dims; c++)
+            sum += segment.get(base + c) * q[c];
+        return sum;
+    }
+
+    /** Dot product of the vectors at rows a and b. */
+    @Override
+    public float dot(int a, int b) {
+        FloatBuffer sa = segments[a / rowsPerSegment], sb = segments[b / rowsPerSegment];
+        int ba = (a % rowsPerSegment) * dims, bb = (b % rowsPerSegment) * dims;
+        float sum = 0;
+        for (int c = 0; c < dims; c++)
+            sum += sa.get(ba + c) * sb.get(bb + c);
+        return sum;
+    }
+
+    /** Copies the vector at row into out[0, dims). */
+    @Override
+    public void getRow(int row, float[] out) {
+        FloatBuffer segment = segments[row / rowsPerSegment];
+        int base = (row % rowsPerSegment) * dims;
+        for (int c = 0; c < dims; c++)
+            out[c] = segment.get(base + c);
+    }
+
+    /** Whether the file starts with the magic number of this format. */
+    public static boolean isBinary(File file) throws IOException {
+        if (file.length() < HEADER_SIZE)
+            return false;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return Integer.reverseBytes(in.readInt()) == MAGIC;
+        }
+    }
+
+    /** Memory-maps a file written by a Writer. */
+    public static BinaryVecFile map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC)
+                throw new IOException(file + " is not a binary vector file");
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported binary vector file version " + version);
+            int rows = header.getInt();
+            int dims = header.getInt();
+            long matrixOffset = header.getLong();
+
+            if (matrixOffset - HEADER_SIZE > Integer.MAX_VALUE)
+                throw new IOException("Id table too large in " + file);
+            ByteBuffer idTable = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, matrixOffset - HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            int rowsPerSegment = Math.max(1, Integer.MAX_VALUE / (Math.max(1, dims) * 4));
+            int numSegments = Math.max(1, (rows + rowsPerSegment - 1) / rowsPerSegment);
+            FloatBuffer[] segments = new FloatBuffer[numSegments];
+            for (int s = 0; s < numSegments; s++) {
+                long firstRow = (long)s * rowsPerSegment;
+                long numRows = Math.min(rowsPerSegment, rows - firstRow);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY,
+                        matrixOffset + firstRow * dims * 4, numRows * dims * 4);
+                segments[s] = segment.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            }
+            // the mappings stay valid after the channel is closed
+            return new BinaryVecFile(rows, dims, idTable, segments, rowsPerSegment);
+        }
+    }
+
+    /**
+     * Writes vectors in the binary format. The ids (and hence the number of rows) are
+     * given up front; then each row is written in order with writeRow.
+     */
+    public static class Writer implements Closeable {
+        final OutputStream out;
+        final int rows, dims;
+        final ByteBuffer rowBuff;
+        int written;
+
+        public Writer(OutputStream output, String[] ids, int dims) throws IOException {
+            this.out = new BufferedOutputStream(output, 1 << 16);
+            this.rows = ids.length;
+            this.dims = dims;
+            this.rowBuff = ByteBuffer.allocate(dims * 4).order(ByteOrder.LITTLE_ENDIAN);
+
+            ByteArrayOutputStream idTable = new ByteArrayOutputStream();
+            ByteBuffer len = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            for (String id : ids) {
+                byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                len.clear();
+                len.putInt(bytes.length);
+                idTable.write(len.array());
+                idTable.write(bytes);
+            }
+            long matrixOffset = HEADER_SIZE + idTable.size();
+            matrixOffset = (matrixOffset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(dims).putLong(matrixOffset);
+            out.write(header.array());
+            idTable.writeTo(out);
+            out.write(new byte[(int)(matrixOffset - HEADER_SIZE - idTable.size())]);
+        }
+
+        /** Writes the next row from vec[offset, offset+dims). */
+        public void writeRow(float[] vec, int offset) throws IOException {
+            if (written == rows)
+                throw new IOException("All the " + rows + " rows have already been written");
+            rowBuff.clear();
+            for (int c = 0; c < dims; c++)
+                rowBuff.putFloat(vec[offset + c]);
+            out.write(rowBuff.array());
+            written++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (written != rows)
+                    throw new IOException(String.format("Only %d of the %d rows have been written", written, rows));
+            }
+            finally {
+                out.close();
+            }
+        }
+    }
+}
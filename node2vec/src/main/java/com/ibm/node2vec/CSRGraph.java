@@ -0,0 +1,195 @@
+package com.ibm.node2vec;
+
+import java.util.Arrays;
+
+/**
+ * Compressed sparse row (CSR) representation of a weighted graph.
+ * The out-edges of node v are at the positions [offsets[v], offsets[v+1]) of
+ * the targets and weights arrays, i.e. the whole graph takes up
+ * 4*(numNodes+1) + 8*numEdges bytes in three flat arrays,
+ * with no per-node or per-edge object and no cap on the out-degree.
+ *
+ * Once the rows are sorted (sortAdjacency), hasEdge(u, x) is a binary search over the
+ * row of u, and optionally (indexHubs) an O(1) look-up for the nodes of high out-degree,
+ * which on power-law graphs are the ones that make the neighbour test expensive.
+ *
+ * @author dganguly
+ */
+public final class CSRGraph {
+    final int[] offsets;
+    final int[] targets;
+    final float[] weights;
+    boolean sorted;
+
+    // Membership index of the hubs: hubIndex[u] is -1 for a node that is not a hub, else
+    // the start of its table in hubTables. A hub's table is either an open-addressing set
+    // of its targets (power of 2 capacity, empty slots are -1) or a bitset over all the
+    // nodes, whichever is smaller; hubMasks[u] is the capacity-1 for a set, -1 for a bitset.
+    int[] hubIndex;
+    int[] hubMasks;
+    int[] hubTables;
+
+    public CSRGraph(int[] offsets, int[] targets, float[] weights) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    public int numNodes() { return offsets.length - 1; }
+
+    public int numEdges() { return offsets[offsets.length - 1]; }
+
+    public int degree(int v) { return offsets[v + 1] - offsets[v]; }
+
+    /**
+     * Sorts the out-edges of every node by target (the weights move along with them).
+     * The distribution of a walk doesn't depend on the order of the edges, but anything
+     * that refers to edge positions has to be built after this.
+     */
+    public void sortAdjacency() {
+        long[] buff = new long[0];
+        for (int v = 0; v < numNodes(); v++) {
+            int from = offsets[v], n = degree(v);
+            if (buff.length < n) buff = new long[n];
+            // pack (target, weight bits) so that a sort of longs orders by target
+            for (int k = 0; k < n; k++)
+                buff[k] = ((long)targets[from + k] << 32) | (Float.floatToRawIntBits(weights[from + k]) & 0xFFFFFFFFL);
+            Arrays.sort(buff, 0, n);
+            for (int k = 0; k < n; k++) {
+                targets[from + k] = (int)(buff[k] >>> 32);
+                weights[from + k] = Float.intBitsToFloat((int)buff[k]);
+            }
+        }
+        sorted = true;
+    }
+
+    /**
+     * Builds the O(1) membership index for the nodes with out-degree at least minDegree.
+     */
+    public void indexHubs(int minDegree) {
+        int numNodes = numNodes();
+        int bitsetWords = (numNodes + 31) >>> 5;
+        hubIndex = new int[numNodes];
+        hubMasks = new int[numNodes];
+        Arrays.fill(hubIndex, -1);
+
+        long size = 0;
+        for (int v = 0; v < numNodes; v++) {
+            if (degree(v) >= minDegree)
+                size += Math.min(tableCapacity(degree(v)), bitsetWords);
+        }
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalStateException("Hub index too large; increase the hub degree threshold");
+        hubTables = new int[(int)size];
+
+        int pos = 0;
+        for (int v = 0; v < numNodes; v++) {
+            int n = degree(v);
+            if (n < minDegree)
+                continue;
+            hubIndex[v] = pos;
+            int capacity = tableCapacity(n);
+            if (bitsetWords <= capacity) {
+                hubMasks[v] = -1;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++)
+                    hubTables[pos + (targets[e] >>> 5)] |= 1 << (targets[e] & 31);
+                pos += bitsetWords;
+            }
+            else {
+                int mask = capacity - 1;
+                hubMasks[v] = mask;
+                Arrays.fill(hubTables, pos, pos + capacity, -1);
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int slot = mix(targets[e]) & mask;
+                    while (hubTables[pos + slot] != -1 && hubTables[pos + slot] != targets[e])
+                        slot = (slot + 1) & mask;
+                    hubTables[pos + slot] = targets[e];
+                }
+                pos += capacity;
+            }
+        }
+    }
+
+    // Smallest power of 2 that keeps a set of n elements at most half full
+    static int tableCapacity(int n) {
+        return Integer.highestOneBit(Math.max(1, 2 * n - 1)) << 1;
+    }
+
+    static int mix(int x) {
+        x *= 0x9E3779B9;
+        return x ^ (x >>> 16);
+    }
+
+    /** Whether there is an edge u -> x. O(1) for an indexed hub, else O(log outdegree(u)) if sorted. */
+    public boolean hasEdge(int u, int x) {
+        if (hubIndex != null && hubIndex[u] >= 0) {
+            int pos = hubIndex[u], mask = hubMasks[u];
+            if (mask < 0)
+                return (hubTables[pos + (x >>> 5)] & (1 << (x & 31))) != 0;
+
+            int slot = mix(x) & mask;
+            while (true) {
+                int y = hubTables[pos + slot];
+                if (y == x) return true;
+                if (y == -1) return false;
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        if (sorted)
+            return Arrays.binarySearch(targets, offsets[u], offsets[u + 1], x) >= 0;
+
+        for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+            if (targets[e] == x)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Accumulates an edge list (in any order) and then lays it out as CSR in two passes:
+     * the first counts the out-degrees, the second places each edge in its row.
+     * The edges of a node keep the order in which they were added.
+     */
+    public static class Builder {
+        int[] src = new int[1024];
+        int[] dst = new int[1024];
+        float[] wt = new float[1024];
+        int numEdges;
+
+        public void addEdge(int s, int d, float w) {
+            if (numEdges == src.length) {
+                int capacity = (int)Math.min(Integer.MAX_VALUE - 8, 2L * src.length);
+                if (capacity == numEdges)
+                    throw new IllegalStateException("Too many edges: " + numEdges);
+                src = Arrays.copyOf(src, capacity);
+                dst = Arrays.copyOf(dst, capacity);
+                wt = Arrays.copyOf(wt, capacity);
+            }
+            src[numEdges] = s;
+            dst[numEdges] = d;
+            wt[numEdges] = w;
+            numEdges++;
+        }
+
+        public int numEdges() { return numEdges; }
+
+        public CSRGraph build(int numNodes) {
+            int[] offsets = new int[numNodes + 1];
+            for (int e = 0; e < numEdges; e++)
+                offsets[src[e] + 1]++;
+            for (int v = 0; v < numNodes; v++)
+                offsets[v + 1] += offsets[v];
+
+            int[] targets = new int[numEdges];
+            float[] weights = new float[numEdges];
+            int[] next = Arrays.copyOf(offsets, numNodes);
+            for (int e = 0; e < numEdges; e++) {
+                int pos = next[src[e]]++;
+                targets[pos] = dst[e];
+                weights[pos] = wt[e];
+            }
+            return new CSRGraph(offsets, targets, weights);
+        }
+    }
+}
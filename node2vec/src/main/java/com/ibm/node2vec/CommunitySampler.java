@@ -0,0 +1,103 @@
+package com.ibm.node2vec;
+
+import com.ibm.modularity.ModularityLoader;
+
+/**
+ * Community-aware sampling of the pairs of skip-gram (node2vec.community_sampling),
+ * with the communities of a seed partition indexed by the vocab ids:
+ * <ul>
+ * <li>positives: a context node that shares no community with its source node is
+ * replaced by a node of one of the communities of the source (drawn from an alias
+ * table of the community, with prob proportional to cn^0.75 as the negatives), so
+ * that the step trains a positive pair rather than a pair of label 0;</li>
+ * <li>negatives: drawn from the unigram distribution, but drawn again (up to
+ * MAX_TRIES times in all) while they fall in a community of the source node.</li>
+ * </ul>
+ * The alias tables of all the communities are stored in one pair of flat arrays, in
+ * the order of the members of the communities.
+ *
+ * @author dganguly
+ */
+public final class CommunitySampler {
+    static final int MAX_TRIES = 8;
+
+    final ModularityLoader partition;
+    final AliasTable unigram;
+    final int[] offsets; // the members of community c are members[offsets[c], offsets[c+1])
+    final int[] members;
+    final float[] prob;
+    final int[] alias;
+
+    /**
+     * @param partition The seed partition, indexed by the vocab ids.
+     * @param weights The weight of each vocab id (cn^0.75).
+     * @param unigram The negative sampling distribution (over the same weights).
+     */
+    public CommunitySampler(ModularityLoader partition, double[] weights, AliasTable unigram) {
+        this.partition = partition;
+        this.unigram = unigram;
+        int numNodes = weights.length, numCommunities = partition.numCommunities();
+
+        offsets = new int[numCommunities + 1];
+        for (int a = 0; a < numNodes; a++) {
+            for (int j = 0, n = partition.numCommunitiesOf(a); j < n; j++)
+                offsets[partition.communityOf(a, j) + 1]++;
+        }
+        int maxSize = 0;
+        for (int c = 0; c < numCommunities; c++) {
+            maxSize = Math.max(maxSize, offsets[c + 1]);
+            offsets[c + 1] += offsets[c];
+        }
+        members = new int[offsets[numCommunities]];
+        int[] next = new int[numCommunities];
+        System.arraycopy(offsets, 0, next, 0, numCommunities);
+        for (int a = 0; a < numNodes; a++) {
+            for (int j = 0, n = partition.numCommunitiesOf(a); j < n; j++)
+                members[next[partition.communityOf(a, j)]++] = a;
+        }
+
+        prob = new float[members.length];
+        alias = new int[members.length];
+        double[] w = new double[maxSize];
+        int[] small = new int[maxSize], large = new int[maxSize];
+        for (int c = 0; c < numCommunities; c++) {
+            int from = offsets[c], size = offsets[c + 1] - from;
+            for (int i = 0; i < size; i++)
+                w[i] = weights[members[from + i]];
+            AliasTable.build(w, size, prob, alias, from, small, large);
+        }
+    }
+
+    /** Whether the node is in a community of the partition. */
+    public boolean hasCommunity(int word) {
+        return partition.numCommunitiesOf(word) > 0;
+    }
+
+    /**
+     * A node of a community of word (one of them at random if it has several) other
+     * than word itself, or -1 if there is none.
+     */
+    public int positive(int word, Word2VecRandom rnd) {
+        int n = partition.numCommunitiesOf(word);
+        if (n == 0)
+            return -1;
+        int c = partition.communityOf(word, n == 1? 0 : rnd.nextInt(n));
+        int from = offsets[c], size = offsets[c + 1] - from;
+        if (size < 2)
+            return -1;
+        for (int t = 0; t < MAX_TRIES; t++) {
+            int member = members[from + AliasTable.sample(prob, alias, from, size, rnd)];
+            if (member != word)
+                return member;
+        }
+        return -1;
+    }
+
+    /** A negative sample for word, outside its communities unless MAX_TRIES draws fail. */
+    public int negative(int word, Word2VecRandom rnd) {
+        int target = unigram.sample(rnd);
+        for (int t = 1; t < MAX_TRIES && partition.overlapInCommunity(word, target); t++)
+            target = unigram.sample(rnd);
+        return target;
+    }
+}
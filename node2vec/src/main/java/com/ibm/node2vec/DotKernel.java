@@ -0,0 +1,84 @@
+package com.ibm.node2vec;
+
+/**
+ * The dense vector primitives of training (skipgram) and of the similarity queries
+ * (WordVec, WordVecs), on slices of float arrays, behind one interface so that the
+ * implementation can be chosen at run time:
+ * <ul>
+ *  <li>scalar: the plain loops, as in word2vec.c (the results are exactly those of the C code)</li>
+ *  <li>unrolled: manually unrolled loops with four independent accumulators, which breaks
+ *      the dependency chain of a reduction so that the additions can overlap</li>
+ *  <li>vector: SIMD through the JDK Vector API (SimdKernel), only available when the classes
+ *      were built on JDK 17+ (the vector-api profile) and the JVM runs with
+ *      --add-modules jdk.incubator.vector</li>
+ *  <li>auto: vector if it is available, else unrolled</li>
+ * </ul>
+ * The unrolled and vector kernels add in a different order than the scalar one, so their
+ * results may differ from it in the last bits.
+ *
+ * The default kernel, used where no kernel is passed explicitly (e.g. by WordVec), is
+ * the one named by the system property node2vec.kernel (auto if not set); Node2Vec also
+ * sets it from its own node2vec.kernel property.
+ *
+ * @author dganguly
+ */
+public interface DotKernel {
+    /** The dot product of a[aOff, aOff+n) and b[bOff, bOff+n). */
+    float dot(float[] a, int aOff, float[] b, int bOff, int n);
+
+    /** y[yOff, yOff+n) += alpha * x[xOff, xOff+n). */
+    void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int n);
+
+    /** The squared L2 distance between a[aOff, aOff+n) and b[bOff, bOff+n). */
+    float squaredDistance(float[] a, int aOff, float[] b, int bOff, int n);
+
+    /** The name of the implementation. */
+    String name();
+
+    /** The kernel of a name (scalar, unrolled, vector or auto). */
+    static DotKernel forName(String name) {
+        switch (name) {
+            case "scalar":
+                return ScalarKernel.INSTANCE;
+            case "unrolled":
+                return UnrolledKernel.INSTANCE;
+            case "vector": {
+                DotKernel simd = Holder.loadSimd();
+                if (simd == null)
+                    throw new IllegalArgumentException("The vector kernel needs JDK 17+ classes of the " +
+                            "vector-api profile and --add-modules jdk.incubator.vector");
+                return simd;
+            }
+            case "auto": {
+                DotKernel simd = Holder.loadSimd();
+                return simd != null? simd : UnrolledKernel.INSTANCE;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown kernel: " + name);
+        }
+    }
+
+    /** The default kernel. */
+    static DotKernel get() { return Holder.current; }
+
+    /** Changes the default kernel. */
+    static void setDefault(DotKernel kernel) { Holder.current = kernel; }
+
+    final class Holder {
+        static volatile DotKernel current = forName(System.getProperty("node2vec.kernel", "auto"));
+
+        private Holder() {}
+
+        // The SIMD kernel, or null if its class or the incubator module is missing
+        static DotKernel loadSimd() {
+            try {
+                DotKernel kernel = (DotKernel)Class.forName("com.ibm.node2vec.SimdKernel").getField("INSTANCE").get(null);
+                kernel.dot(new float[1], 0, new float[1], 0, 1); // fails here if the module isn't there
+                return kernel;
+            }
+            catch (ReflectiveOperationException | LinkageError ex) {
+                return null;
+            }
+        }
+    }
+}
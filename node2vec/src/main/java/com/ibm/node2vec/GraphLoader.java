@@ -0,0 +1,471 @@
+package com.ibm.node2vec;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Parses an edge list file (each line is <src-node>\t<dest-node>[\t<weight>]) in a single
+ * pass, in parallel.
+ *
+ * A file is memory-mapped (with NIO) one chunk at a time, the chunks being cut at line
+ * boundaries, and each chunk is parsed by a different task directly on the bytes:
+ * the node names of a chunk are interned into a chunk-local dictionary of byte sequences,
+ * so that a String is created only once per distinct node of a chunk (instead of once per
+ * token), and its edges are collected as (local id, local id, weight) triples.
+ * Purely numeric node names (such as the ones of the LFR benchmark graphs) take a fast
+ * path: they are looked up by their int value in an IntIntHashMap, with no byte comparison.
+ *
+ * The caller then merges the chunk dictionaries in order (which gives the nodes in the
+ * order of their first occurrence in the file, as a sequential reader would),
+ * maps the local ids to its own ids and lays out the edges with buildGraph.
+ *
+ * A weight that is not a number fails the load with an IOException that gives its line
+ * (numbered over the whole file) rather than being read as 0.
+ *
+ * @author dganguly
+ */
+public class GraphLoader {
+    static final long CHUNK_SIZE = 64L << 20; // bytes per parse task (and per mapping)
+
+    final int numThreads;
+    long chunkSize = CHUNK_SIZE;
+
+    public GraphLoader(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * The nodes and the edges read from one chunk of the file.
+     * Local node ids are in the order of first occurrence within the chunk.
+     */
+    public static class Chunk {
+        // the bytes of the node names, one after the other
+        byte[] arena = new byte[1 << 12];
+        int arenaSize;
+        int[] keyOffsets = new int[256];
+        int[] keyLengths = new int[256];
+        int[] counts = new int[256]; // number of occurrences (as src or dest) of each node
+        int size;
+        // open addressing table of local ids (-1 = empty), capacity a power of 2
+        int[] slots = newSlots(1024);
+        // numeric name -> local id, for the names that are the decimal form of an int
+        final IntIntHashMap numericIds = new IntIntHashMap(1024, IntIntHashMap.DEFAULT_LOAD_FACTOR);
+        boolean[] numeric = new boolean[256]; // whether a local id is in numericIds
+        final CSRGraph.Builder edges = new CSRGraph.Builder();
+        int numLines; // lines parsed so far
+        // local id -> caller id (-1 to drop the edges of the node); set by the caller
+        public int[] remap;
+
+        static int[] newSlots(int capacity) {
+            int[] slots = new int[capacity];
+            Arrays.fill(slots, -1);
+            return slots;
+        }
+
+        public int size() { return size; }
+
+        public int count(int localId) { return counts[localId]; }
+
+        /** The int value of a numeric node name, or -1 if the name is not numeric. */
+        public int numericValue(int localId) {
+            if (!numeric[localId])
+                return -1;
+            int value = 0, off = keyOffsets[localId];
+            for (int i = 0; i < keyLengths[localId]; i++)
+                value = value * 10 + (arena[off + i] - '0');
+            return value;
+        }
+
+        public String word(int localId) {
+            return new String(arena, keyOffsets[localId], keyLengths[localId], StandardCharsets.UTF_8);
+        }
+
+        public int numEdges() { return edges.numEdges(); }
+
+        static int hash(ByteBuffer buff, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++)
+                h = h * 257 + buff.get(i);
+            return CSRGraph.mix(h);
+        }
+
+        boolean equals(int localId, ByteBuffer buff, int from, int to) {
+            int len = to - from;
+            if (keyLengths[localId] != len)
+                return false;
+            int off = keyOffsets[localId];
+            for (int i = 0; i < len; i++) {
+                if (arena[off + i] != buff.get(from + i))
+                    return false;
+            }
+            return true;
+        }
+
+        // Returns the local id of the name in buff[from, to), adding it if it is new.
+        int intern(ByteBuffer buff, int from, int to) {
+            int value = parseNodeNumber(buff, from, to);
+            if (value >= 0) {
+                int id = numericIds.get(value);
+                if (id >= 0) {
+                    counts[id]++;
+                    return id;
+                }
+                id = add(buff, from, to);
+                numericIds.putIfAbsent(value, id);
+                numeric[id] = true;
+                return id;
+            }
+
+            int mask = slots.length - 1;
+            int slot = hash(buff, from, to) & mask;
+            int id;
+            while ((id = slots[slot]) != -1) {
+                if (equals(id, buff, from, to)) {
+                    counts[id]++;
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            id = add(buff, from, to);
+            slots[slot] = id;
+            if (2 * (size - numericIds.size()) > slots.length)
+                rehash();
+            return id;
+        }
+
+        // Appends a new name to the arena
+        int add(ByteBuffer buff, int from, int to) {
+            int id = size++;
+            if (id == keyOffsets.length) {
+                keyOffsets = Arrays.copyOf(keyOffsets, 2 * id);
+                keyLengths = Arrays.copyOf(keyLengths, 2 * id);
+                counts = Arrays.copyOf(counts, 2 * id);
+                numeric = Arrays.copyOf(numeric, 2 * id);
+            }
+            int len = to - from;
+            if (arenaSize + len > arena.length)
+                arena = Arrays.copyOf(arena, Math.max(2 * arena.length, arenaSize + len));
+            for (int i = 0; i < len; i++)
+                arena[arenaSize + i] = buff.get(from + i);
+            keyOffsets[id] = arenaSize;
+            keyLengths[id] = len;
+            counts[id] = 1;
+            arenaSize += len;
+            return id;
+        }
+
+        void rehash() {
+            slots = newSlots(2 * slots.length);
+            int mask = slots.length - 1;
+            ByteBuffer keys = ByteBuffer.wrap(arena);
+            for (int id = 0; id < size; id++) {
+                if (numeric[id]) continue;
+                int slot = hash(keys, keyOffsets[id], keyOffsets[id] + keyLengths[id]) & mask;
+                while (slots[slot] != -1)
+                    slot = (slot + 1) & mask;
+                slots[slot] = id;
+            }
+        }
+
+        // Parses the lines of buff[0, limit)
+        void parse(ByteBuffer buff) throws MalformedLineException {
+            int end = buff.limit();
+            int pos = 0;
+            while (pos < end) {
+                numLines++;
+                int src_from = pos;
+                while (pos < end && !isDelim(buff.get(pos))) pos++;
+                int src_to = pos;
+                if (pos == end || buff.get(pos) != '\t') { // not an edge... skip the line
+                    pos = nextLine(buff, pos, end);
+                    continue;
+                }
+
+                int dst_from = ++pos;
+                while (pos < end && !isDelim(buff.get(pos))) pos++;
+                int dst_to = pos;
+
+                float wt = 1;
+                if (pos < end && buff.get(pos) == '\t') {
+                    int wt_from = ++pos;
+                    while (pos < end && !isDelim(buff.get(pos))) pos++;
+                    if (pos > wt_from) {
+                        try {
+                            wt = parseFloat(buff, wt_from, pos);
+                        }
+                        catch (NumberFormatException ex) {
+                            throw new MalformedLineException(numLines,
+                                    "Malformed weight \"" + text(buff, wt_from, pos) + "\"", text(buff, src_from, nextLine(buff, pos, end) - 1));
+                        }
+                    }
+                }
+                pos = nextLine(buff, pos, end);
+
+                if (src_to == src_from || dst_to == dst_from)
+                    continue;
+                int src = intern(buff, src_from, src_to);
+                int dst = intern(buff, dst_from, dst_to);
+                edges.addEdge(src, dst, wt);
+            }
+        }
+    }
+
+    // A line of a chunk that cannot be parsed (the line being numbered within the chunk)
+    static class MalformedLineException extends IOException {
+        final int line;
+        final String text;
+
+        MalformedLineException(int line, String message, String text) {
+            super(message);
+            this.line = line;
+            this.text = text;
+        }
+    }
+
+    // The bytes buff[from, to) as a String, without a trailing '\r'
+    static String text(ByteBuffer buff, int from, int to) {
+        to = Math.min(to, buff.limit());
+        if (to > from && buff.get(to - 1) == '\r') to--;
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buff.get(from + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The value of a node name that is the canonical decimal form of a non-negative int
+     * of at most 9 digits (no sign, no leading zero), else -1. Names such as "007" are
+     * not numeric, so that two distinct names never share a number.
+     */
+    static int parseNodeNumber(ByteBuffer buff, int from, int to) {
+        int len = to - from;
+        if (len > 9 || (len > 1 && buff.get(from) == '0'))
+            return -1;
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buff.get(i);
+            if (b < '0' || b > '9')
+                return -1;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    static boolean isDelim(byte b) {
+        return b == '\t' || b == '\n' || b == '\r';
+    }
+
+    static int nextLine(ByteBuffer buff, int pos, int end) {
+        while (pos < end && buff.get(pos) != '\n') pos++;
+        return pos + 1;
+    }
+
+    /**
+     * Parses a decimal number ([-+]digits[.digits][e[-+]digits]) without creating a String;
+     * anything else (such as "-", "e5" or "1.2.3") is handed over to Float.parseFloat,
+     * which throws a NumberFormatException if it is not a number either.
+     */
+    static float parseFloat(ByteBuffer buff, int from, int to) {
+        int pos = from;
+        boolean negative = false;
+        byte b = buff.get(pos);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int exponent = 0, digits = 0;
+        boolean fraction = false, any = false;
+        for (; pos < to; pos++) {
+            b = buff.get(pos);
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa > 0) digits++;
+                    if (fraction) exponent--;
+                }
+                else if (!fraction)
+                    exponent++;
+            }
+            else if (b == '.' && !fraction)
+                fraction = true;
+            else
+                break;
+        }
+        if (pos < to && (buff.get(pos) == 'e' || buff.get(pos) == 'E')) {
+            int exp = 0, sign = 1;
+            pos++;
+            if (pos < to && (buff.get(pos) == '-' || buff.get(pos) == '+'))
+                sign = buff.get(pos++) == '-'? -1 : 1;
+            int exp_from = pos;
+            for (; pos < to && buff.get(pos) >= '0' && buff.get(pos) <= '9'; pos++)
+                exp = Math.min(exp * 10 + (buff.get(pos) - '0'), 1000);
+            if (pos == exp_from) pos = -1; // malformed
+            exponent += sign * exp;
+        }
+        if (pos != to || !any)
+            return Float.parseFloat(text(buff, from, to));
+
+        double value = mantissa * Math.pow(10, exponent);
+        return (float)(negative? -value : value);
+    }
+
+    /**
+     * Parses the whole input. A FileInputStream is memory-mapped chunk by chunk;
+     * any other stream is read into memory first.
+     */
+    public List<Chunk> parse(InputStream input) throws IOException {
+        if (input instanceof FileInputStream) {
+            try (FileChannel channel = ((FileInputStream)input).getChannel()) {
+                return parse(channel);
+            }
+        }
+        ByteBuffer buff = ByteBuffer.wrap(IOUtils.toByteArray(input));
+        List<long[]> ranges = new ArrayList<>();
+        long start = 0, size = buff.limit();
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            while (end < size && buff.get((int)end - 1) != '\n') end++;
+            ranges.add(new long[] { start, end });
+            start = end;
+        }
+
+        List<ByteBuffer> views = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            ByteBuffer view = buff.duplicate();
+            view.position((int)range[0]).limit((int)range[1]);
+            views.add(view.slice());
+        }
+        return parseAll(views, null, ranges);
+    }
+
+    List<Chunk> parse(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            // move the end just past the next new line
+            probe_loop:
+            while (end < size) {
+                probe.clear();
+                int n = channel.read(probe, end - 1);
+                for (int i = 0; i < n; i++) {
+                    if (probe.get(i) == '\n') {
+                        end += i;
+                        break probe_loop;
+                    }
+                }
+                end += n;
+            }
+            end = Math.min(end, size);
+            if (end - start > Integer.MAX_VALUE)
+                throw new IOException("Line too long at byte " + start);
+            ranges.add(new long[] { start, end });
+            start = end;
+        }
+        return parseAll(null, channel, ranges);
+    }
+
+    // Parses each range (given as a buffer, or to be mapped from the channel) in its own task
+    List<Chunk> parseAll(final List<ByteBuffer> views, final FileChannel channel, final List<long[]> ranges) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<Chunk>> futures = new ArrayList<>(ranges.size());
+            for (int i = 0; i < ranges.size(); i++) {
+                final int index = i;
+                futures.add(pool.submit(() -> {
+                    long[] range = ranges.get(index);
+                    ByteBuffer buff = views != null? views.get(index) :
+                            channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+                    Chunk chunk = new Chunk();
+                    chunk.parse(buff);
+                    return chunk;
+                }));
+            }
+            List<Chunk> chunks = new ArrayList<>(futures.size());
+            long lines = 0; // in the chunks before
+            for (Future<Chunk> future : futures) {
+                try {
+                    Chunk chunk = future.get();
+                    chunks.add(chunk);
+                    lines += chunk.numLines;
+                }
+                catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof MalformedLineException) {
+                        MalformedLineException malformed = (MalformedLineException)ex.getCause();
+                        throw new IOException(malformed.getMessage() + " on line " + (lines + malformed.line) + ": " + malformed.text);
+                    }
+                    throw new IOException("Error while loading the graph", ex.getCause());
+                }
+            }
+            return chunks;
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading the graph", ex);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Lays out the edges of all the chunks as CSR, with the node ids mapped through
+     * Chunk.remap (edges with an end-point mapped to -1 are dropped).
+     * For an undirected graph, each edge is added in both directions.
+     * The edges of a node are in file order.
+     */
+    public static CSRGraph buildGraph(int numNodes, List<Chunk> chunks, boolean directed) {
+        int[] offsets = new int[numNodes + 1];
+        for (Chunk chunk : chunks) {
+            CSRGraph.Builder edges = chunk.edges;
+            for (int e = 0; e < edges.numEdges; e++) {
+                int src = chunk.remap[edges.src[e]], dst = chunk.remap[edges.dst[e]];
+                if (src < 0 || dst < 0) continue;
+                offsets[src + 1]++;
+                if (!directed) offsets[dst + 1]++;
+            }
+        }
+        for (int v = 0; v < numNodes; v++) {
+            if ((long)offsets[v + 1] + offsets[v] > Integer.MAX_VALUE)
+                throw new IllegalStateException("Too many edges");
+            offsets[v + 1] += offsets[v];
+        }
+
+        int[] targets = new int[offsets[numNodes]];
+        float[] weights = new float[offsets[numNodes]];
+        int[] next = Arrays.copyOf(offsets, numNodes);
+        for (Chunk chunk : chunks) {
+            CSRGraph.Builder edges = chunk.edges;
+            for (int e = 0; e < edges.numEdges; e++) {
+                int src = chunk.remap[edges.src[e]], dst = chunk.remap[edges.dst[e]];
+                if (src < 0 || dst < 0) continue;
+                int pos = next[src]++;
+                targets[pos] = dst;
+                weights[pos] = edges.wt[e];
+                if (!directed) {
+                    pos = next[dst]++;
+                    targets[pos] = src;
+                    weights[pos] = edges.wt[e];
+                }
+            }
+        }
+        return new CSRGraph(offsets, targets, weights);
+    }
+}
@@ -0,0 +1,604 @@
+package com.ibm.node2vec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Approximate nearest neighbour index (by cosine similarity) over the rows of a
+ * VectorRows, as a hierarchical navigable small world (HNSW) graph
+ * (Malkov and Yashunin, "Efficient and robust approximate nearest neighbor search
+ * using Hierarchical Navigable Small World graphs").
+ *
+ * Every row is a node on level 0 and, with probability decaying geometrically, on
+ * each of the levels above; a node has at most M links on the upper levels and 2M
+ * on level 0, chosen by the neighbour selection heuristic of the paper. A query goes
+ * greedily down from the top level and then runs a best-first search with a
+ * candidate list of size efSearch on level 0, i.e. it visits O(log N) nodes instead
+ * of computing all the N similarities.
+ *
+ * The index is built by inserting the rows one at a time (addAll, with any number
+ * of threads: the link lists are guarded by striped locks) and can be saved
+ * to and loaded from a file next to the vectors; it only stores row numbers, so it
+ * has to be used with the same rows, in the same order, as it was built on.
+ * Queries are thread-safe (each thread has its own visited set and heaps); they only
+ * take the locks while addAll is running, a built or loaded index is read without them.
+ *
+ * @author dganguly
+ */
+public final class HnswIndex {
+    static final int MAGIC = 0x57534E48; // "HNSW" read as a little-endian int
+    static final int VERSION = 1;
+    static final int HEADER_INTS = 8;
+    static final int LOCK_STRIPES = 1 << 12;
+    static final int MAX_LEVEL = 31;
+
+    final VectorRows vecs;
+    final int n;
+    final int M, maxM0;
+    final int efConstruction;
+    int efSearch = 50;
+    final double levelMult;
+
+    final float[] invNorms;
+    final byte[] levels; // -1 for a row not inserted yet
+    final int[] links0; // level 0 links of v: the count at v*(maxM0+1), then the rows
+    final int[][] upperLinks; // level l >= 1 of v: the count at (l-1)*(M+1), then the rows
+    final Object[] locks;
+    final AtomicInteger nextRow = new AtomicInteger();
+
+    // guarded by this while building
+    int entryPoint = -1;
+    int maxLevel = -1;
+
+    // Whether addAll is inserting rows. The links and the entry point are only read
+    // under their locks while it is: the volatile write at the end of addAll (after its
+    // threads are joined) publishes the whole graph to the readers that see it false
+    volatile boolean building;
+
+    final ThreadLocal<Searcher> searchers;
+
+    /**
+     * Creates an empty index over the rows of vecs.
+     * @param vecs The vectors (their norms are computed here).
+     * @param M Max number of links per node on the upper levels (twice as many on level 0).
+     * @param efConstruction Size of the candidate list when inserting a row.
+     */
+    public HnswIndex(VectorRows vecs, int M, int efConstruction) {
+        this(vecs, M, efConstruction, new byte[vecs.rows()]);
+        Arrays.fill(levels, (byte)-1);
+    }
+
+    HnswIndex(VectorRows vecs, int M, int efConstruction, byte[] levels) {
+        if (M < 2)
+            throw new IllegalArgumentException("M must be at least 2");
+        this.vecs = vecs;
+        this.n = vecs.rows();
+        this.M = M;
+        this.maxM0 = 2 * M;
+        this.efConstruction = Math.max(efConstruction, M);
+        this.levelMult = 1 / Math.log(M);
+        this.levels = levels;
+
+        if ((long)n * (maxM0 + 1) > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Too many rows for M=" + M + ": " + n);
+        links0 = new int[n * (maxM0 + 1)];
+        upperLinks = new int[n][];
+
+        invNorms = new float[n];
+        for (int v = 0; v < n; v++) {
+            float norm = (float)Math.sqrt(vecs.dot(v, v));
+            invNorms[v] = norm > 0? 1 / norm : 0;
+        }
+
+        locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new Object();
+        searchers = ThreadLocal.withInitial(Searcher::new);
+    }
+
+    public int size() { return Math.min(nextRow.get(), n); }
+
+    public int getEfSearch() { return efSearch; }
+
+    public void setEfSearch(int efSearch) { this.efSearch = efSearch; }
+
+    Object lock(int v) { return locks[v & (LOCK_STRIPES - 1)]; }
+
+    int maxLinks(int level) { return level == 0? maxM0 : M; }
+
+    // Random level of a row, a function of the row alone so that the index
+    // doesn't depend on the order (or the threads) of the insertions.
+    int randomLevel(int row) {
+        long z = (row + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        double u = ((z >>> 11) + 1) * 0x1.0p-53; // in (0, 1]
+        return Math.min(MAX_LEVEL, (int)(-Math.log(u) * levelMult));
+    }
+
+    // The per-thread scratch space of the searches.
+    final class Searcher {
+        final int[] visited = new int[n];
+        int tag;
+        int[] candRows = new int[64];
+        float[] candSims = new float[64];
+        int numCands;
+        TopK results;
+        int[] nbrs = new int[maxM0 + 1];
+        float[] vec = new float[vecs.dims()];
+
+        void newVisit() {
+            if (++tag == 0) {
+                Arrays.fill(visited, 0);
+                tag = 1;
+            }
+        }
+
+        boolean visit(int v) {
+            if (visited[v] == tag)
+                return false;
+            visited[v] = tag;
+            return true;
+        }
+
+        TopK results(int ef) {
+            if (results == null || results.ids.length != ef)
+                results = new TopK(ef);
+            results.clear();
+            return results;
+        }
+
+        // max-heap of the candidates by similarity
+        void push(int row, float sim) {
+            if (numCands == candRows.length) {
+                candRows = Arrays.copyOf(candRows, 2 * numCands);
+                candSims = Arrays.copyOf(candSims, 2 * numCands);
+            }
+            int i = numCands++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (candSims[parent] >= sim)
+                    break;
+                candRows[i] = candRows[parent];
+                candSims[i] = candSims[parent];
+                i = parent;
+            }
+            candRows[i] = row;
+            candSims[i] = sim;
+        }
+
+        // removes the best candidate (read candRows[0], candSims[0] before)
+        void pop() {
+            int row = candRows[--numCands];
+            float sim = candSims[numCands];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= numCands)
+                    break;
+                if (child + 1 < numCands && candSims[child + 1] > candSims[child])
+                    child++;
+                if (candSims[child] <= sim)
+                    break;
+                candRows[i] = candRows[child];
+                candSims[i] = candSims[child];
+                i = child;
+            }
+            candRows[i] = row;
+            candSims[i] = sim;
+        }
+
+        // Copies the links of v on a level into nbrs (count first)
+        void readLinks(int v, int level) {
+            if (building) {
+                synchronized (lock(v)) {
+                    copyLinks(v, level);
+                }
+            }
+            else {
+                copyLinks(v, level);
+            }
+        }
+
+        void copyLinks(int v, int level) {
+            int[] links;
+            int base;
+            if (level == 0) {
+                links = links0;
+                base = v * (maxM0 + 1);
+            }
+            else {
+                links = upperLinks[v];
+                base = (level - 1) * (M + 1);
+            }
+            System.arraycopy(links, base, nbrs, 0, links[base] + 1);
+        }
+    }
+
+    float sim(int v, float[] q, float qInvNorm) {
+        return vecs.dot(v, q) * invNorms[v] * qInvNorm;
+    }
+
+    float sim(int a, int b) {
+        return vecs.dot(a, b) * invNorms[a] * invNorms[b];
+    }
+
+    // Greedy walk on one level towards the query, from entry; returns the closest row found.
+    int greedy(Searcher s, float[] q, float qInvNorm, int entry, int level) {
+        int cur = entry;
+        float curSim = sim(cur, q, qInvNorm);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            s.readLinks(cur, level);
+            for (int i = 1; i <= s.nbrs[0]; i++) {
+                int v = s.nbrs[i];
+                float sim = sim(v, q, qInvNorm);
+                if (sim > curSim) {
+                    cur = v;
+                    curSim = sim;
+                    changed = true;
+                }
+            }
+        }
+        return cur;
+    }
+
+    // Best-first search on one level with a candidate list of size ef; the results
+    // are left in s.results (a heap, to be sorted by the caller).
+    TopK searchLayer(Searcher s, float[] q, float qInvNorm, int entry, int ef, int level) {
+        s.newVisit();
+        s.numCands = 0;
+        TopK results = s.results(ef);
+        float entrySim = sim(entry, q, qInvNorm);
+        s.visit(entry);
+        s.push(entry, entrySim);
+        results.offer(entry, entrySim);
+
+        while (s.numCands > 0) {
+            int c = s.candRows[0];
+            float cSim = s.candSims[0];
+            if (cSim < results.threshold())
+                break;
+            s.pop();
+
+            s.readLinks(c, level);
+            for (int i = 1; i <= s.nbrs[0]; i++) {
+                int v = s.nbrs[i];
+                if (!s.visit(v))
+                    continue;
+                float sim = sim(v, q, qInvNorm);
+                if (sim > results.threshold()) {
+                    s.push(v, sim);
+                    results.offer(v, sim);
+                }
+            }
+        }
+        return results;
+    }
+
+    // The neighbour selection heuristic (algorithm 4 of the paper): goes through the
+    // candidates by decreasing similarity to the base and keeps one only if it is more
+    // similar to the base than to any of those already kept. The candidates are
+    // rows[0, count) sorted by decreasing sims; the kept ones are moved to the front.
+    int selectNeighbours(int[] rows, float[] sims, int count, int max) {
+        int kept = 0;
+        for (int i = 0; i < count && kept < max; i++) {
+            int e = rows[i];
+            boolean good = true;
+            for (int j = 0; j < kept; j++) {
+                if (sim(e, rows[j]) > sims[i]) {
+                    good = false;
+                    break;
+                }
+            }
+            if (good) {
+                rows[kept] = e;
+                sims[kept] = sims[i];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    // Inserts a row (algorithm 1 of the paper)
+    void add(int row, Searcher s) {
+        int level = randomLevel(row);
+        synchronized (lock(row)) {
+            if (levels[row] >= 0)
+                throw new IllegalStateException("Row " + row + " is already in the index");
+            if (level > 0)
+                upperLinks[row] = new int[level * (M + 1)];
+            levels[row] = (byte)level;
+        }
+
+        int entry, top;
+        synchronized (this) {
+            entry = entryPoint;
+            top = maxLevel;
+            if (entry < 0) {
+                entryPoint = row;
+                maxLevel = level;
+                return;
+            }
+        }
+
+        float[] q = s.vec;
+        vecs.getRow(row, q);
+        float qInvNorm = invNorms[row];
+
+        for (int l = top; l > level; l--)
+            entry = greedy(s, q, qInvNorm, entry, l);
+
+        int[] rows = new int[efConstruction];
+        float[] sims = new float[efConstruction];
+        for (int l = Math.min(level, top); l >= 0; l--) {
+            TopK results = searchLayer(s, q, qInvNorm, entry, efConstruction, l);
+            results.sort();
+            int count = results.size();
+            for (int i = 0; i < count; i++) {
+                rows[i] = results.id(i);
+                sims[i] = results.score(i);
+            }
+            entry = rows[0];
+
+            int kept = selectNeighbours(rows, sims, count, M);
+            setLinks(row, l, rows, kept);
+            for (int i = 0; i < kept; i++)
+                link(rows[i], row, l);
+        }
+
+        if (level > top) {
+            synchronized (this) {
+                if (level > maxLevel) {
+                    entryPoint = row;
+                    maxLevel = level;
+                }
+            }
+        }
+    }
+
+    void setLinks(int v, int level, int[] rows, int count) {
+        synchronized (lock(v)) {
+            int[] links = level == 0? links0 : upperLinks[v];
+            int base = level == 0? v * (maxM0 + 1) : (level - 1) * (M + 1);
+            links[base] = count;
+            System.arraycopy(rows, 0, links, base + 1, count);
+        }
+    }
+
+    // Adds the link v -> u, pruning the links of v with the heuristic if they overflow.
+    void link(int v, int u, int level) {
+        int max = maxLinks(level);
+        synchronized (lock(v)) {
+            int[] links = level == 0? links0 : upperLinks[v];
+            int base = level == 0? v * (maxM0 + 1) : (level - 1) * (M + 1);
+            int count = links[base];
+            if (count < max) {
+                links[base + 1 + count] = u;
+                links[base] = count + 1;
+                return;
+            }
+
+            TopK bySim = new TopK(count + 1);
+            bySim.offer(u, sim(v, u));
+            for (int i = 1; i <= count; i++)
+                bySim.offer(links[base + i], sim(v, links[base + i]));
+            bySim.sort();
+            int[] rows = Arrays.copyOf(bySim.ids, count + 1);
+            float[] sims = Arrays.copyOf(bySim.scores, count + 1);
+            int kept = selectNeighbours(rows, sims, count + 1, max);
+            links[base] = kept;
+            System.arraycopy(rows, 0, links, base + 1, kept);
+        }
+    }
+
+    /**
+     * Inserts all the rows not inserted yet (in increasing order of row number).
+     * @param numThreads Number of threads doing the insertions.
+     */
+    public void addAll(int numThreads) throws InterruptedException {
+        building = true;
+        if (numThreads <= 1) {
+            addRemaining();
+        }
+        else {
+            Thread[] threads = new Thread[numThreads];
+            for (int t = 0; t < numThreads; t++) {
+                threads[t] = new Thread(this::addRemaining);
+                threads[t].start();
+            }
+            for (Thread thread : threads)
+                thread.join();
+        }
+        building = false; // left true if an insertion failed (the queries then keep locking)
+    }
+
+    void addRemaining() {
+        Searcher s = searchers.get();
+        int row;
+        while ((row = nextRow.getAndIncrement()) < n)
+            add(row, s);
+        searchers.remove(); // the visited set is as large as the index
+    }
+
+    /**
+     * Finds (approximately) the k rows most similar to a query vector.
+     * @param query The query vector.
+     * @param k Number of results.
+     * @param exclude A row to leave out of the results (e.g. the query's own), or -1.
+     * @param rows Receives the rows of the results, by decreasing similarity.
+     * @param sims Receives the similarities of the results.
+     * @return The number of results (less than k only if the index is smaller).
+     */
+    public int search(float[] query, int k, int exclude, int[] rows, float[] sims) {
+        int entry, top;
+        if (building) {
+            synchronized (this) {
+                entry = entryPoint;
+                top = maxLevel;
+            }
+        }
+        else {
+            entry = entryPoint;
+            top = maxLevel;
+        }
+        if (entry < 0 || k <= 0)
+            return 0;
+
+        float qNorm = 0;
+        for (float x : query)
+            qNorm += x * x;
+        float qInvNorm = qNorm > 0? (float)(1 / Math.sqrt(qNorm)) : 0;
+
+        Searcher s = searchers.get();
+        for (int l = top; l > 0; l--)
+            entry = greedy(s, query, qInvNorm, entry, l);
+
+        TopK results = searchLayer(s, query, qInvNorm, entry, Math.max(efSearch, k + 1), 0);
+        results.sort();
+        int count = 0;
+        for (int i = 0; i < results.size() && count < k; i++) {
+            if (results.id(i) == exclude)
+                continue;
+            rows[count] = results.id(i);
+            sims[count] = results.score(i);
+            count++;
+        }
+        return count;
+    }
+
+    /** Writes the index to a file (little-endian ints, see load). */
+    public void save(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            ByteBuffer buff = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            int entry, top;
+            synchronized (this) {
+                entry = entryPoint;
+                top = maxLevel;
+            }
+            buff.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(vecs.dims())
+                .putInt(M).putInt(efConstruction).putInt(entry).putInt(top);
+            for (int v = 0; v < n; v++)
+                buff = put(channel, buff, levels[v]);
+            for (int x : links0)
+                buff = put(channel, buff, x);
+            for (int v = 0; v < n; v++) {
+                if (upperLinks[v] == null)
+                    continue;
+                for (int x : upperLinks[v])
+                    buff = put(channel, buff, x);
+            }
+            buff.flip();
+            while (buff.hasRemaining())
+                channel.write(buff);
+        }
+    }
+
+    static ByteBuffer put(FileChannel channel, ByteBuffer buff, int x) throws IOException {
+        if (buff.remaining() < 4) {
+            buff.flip();
+            while (buff.hasRemaining())
+                channel.write(buff);
+            buff.clear();
+        }
+        return buff.putInt(x);
+    }
+
+    /**
+     * Loads an index saved by save. The layout is a header of 8 ints (magic, version,
+     * #rows, #dims, M, efConstruction, entry point, max level), the level of every row,
+     * the level 0 links of every row (2M+1 ints each, count first) and then the upper
+     * level links of the rows with a level above 0 (M+1 ints per level).
+     * @param file The index file.
+     * @param vecs The vectors the index was built on.
+     */
+    public static HnswIndex load(File file, VectorRows vecs) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            IntBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            int[] header = new int[HEADER_INTS];
+            in.get(header);
+            if (header[0] != MAGIC)
+                throw new IOException(file + " is not an HNSW index file");
+            if (header[1] != VERSION)
+                throw new IOException("Unsupported HNSW index file version " + header[1]);
+            if (header[2] != vecs.rows() || header[3] != vecs.dims())
+                throw new IOException(String.format("%s indexes %d vectors of %d dimensions, not %d of %d",
+                        file, header[2], header[3], vecs.rows(), vecs.dims()));
+
+            int n = header[2];
+            byte[] levels = new byte[n];
+            for (int v = 0; v < n; v++)
+                levels[v] = (byte)in.get();
+            HnswIndex index = new HnswIndex(vecs, header[4], header[5], levels);
+            in.get(index.links0);
+            int inserted = 0;
+            for (int v = 0; v < n; v++) {
+                if (levels[v] >= 0)
+                    inserted = v + 1;
+                if (levels[v] > 0) {
+                    index.upperLinks[v] = new int[levels[v] * (index.M + 1)];
+                    in.get(index.upperLinks[v]);
+                }
+            }
+            index.entryPoint = header[6];
+            index.maxLevel = header[7];
+            index.nextRow.set(inserted);
+            return index;
+        }
+    }
+
+    /**
+     * Builds (or loads, if it exists) the index of a vector file and reports its
+     * recall@k against the exact search for a few values of efSearch.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("usage: java HnswIndex <vector file> [M (16)] [efConstruction (200)] " +
+                    "[k (10)] [#queries (200)] [#threads]");
+            return;
+        }
+        try {
+            File vecFile = new File(args[0]);
+            int M = args.length > 1? Integer.parseInt(args[1]) : 16;
+            int efConstruction = args.length > 2? Integer.parseInt(args[2]) : 200;
+            int k = args.length > 3? Integer.parseInt(args[3]) : 10;
+            int numQueries = args.length > 4? Integer.parseInt(args[4]) : 200;
+            int numThreads = args.length > 5? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+            WordVecs wvecs = new WordVecs();
+            if (BinaryVecFile.isBinary(vecFile))
+                wvecs.mapBinaryFile(vecFile);
+            else
+                wvecs.loadFromFile(vecFile);
+
+            File indexFile = new File(args[0] + ".hnsw");
+            if (indexFile.exists()) {
+                wvecs.loadIndex(indexFile);
+            }
+            else {
+                wvecs.buildIndex(M, efConstruction, numThreads);
+                wvecs.getIndex().save(indexFile);
+            }
+            for (int efSearch : new int[] { k, 50, 100, 200 }) {
+                wvecs.getIndex().setEfSearch(efSearch);
+                wvecs.reportIndexRecall(numQueries, k);
+            }
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+}
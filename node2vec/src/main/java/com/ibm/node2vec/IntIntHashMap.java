@@ -0,0 +1,85 @@
+package com.ibm.node2vec;
+
+import java.util.Arrays;
+
+/**
+ * A map from int keys to non-negative int values with open addressing (linear probing)
+ * over two primitive arrays, so that neither the keys nor the values are boxed.
+ * The capacity is a power of 2 and is doubled whenever the number of entries
+ * goes beyond the load factor.
+ *
+ * @author dganguly
+ */
+public final class IntIntHashMap {
+    static final float DEFAULT_LOAD_FACTOR = 0.7f;
+
+    final float loadFactor;
+    int[] keys;
+    int[] values; // -1 marks an empty slot
+    int size;
+    int threshold;
+
+    public IntIntHashMap() { this(16, DEFAULT_LOAD_FACTOR); }
+
+    public IntIntHashMap(int expectedSize, float loadFactor) {
+        this.loadFactor = loadFactor;
+        allocate(Integer.highestOneBit(Math.max(2, (int)(expectedSize / loadFactor)) * 2 - 1));
+    }
+
+    void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, -1);
+        threshold = (int)(capacity * loadFactor);
+    }
+
+    public int size() { return size; }
+
+    /** Returns the value of key, or -1 if there is none. */
+    public int get(int key) {
+        int mask = keys.length - 1;
+        int slot = CSRGraph.mix(key) & mask;
+        int value;
+        while ((value = values[slot]) != -1) {
+            if (keys[slot] == key)
+                return value;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Maps key to value (which must be non-negative) unless key is already mapped.
+     * @return The existing value of key, or -1 if value has been added.
+     */
+    public int putIfAbsent(int key, int value) {
+        int mask = keys.length - 1;
+        int slot = CSRGraph.mix(key) & mask;
+        int existing;
+        while ((existing = values[slot]) != -1) {
+            if (keys[slot] == key)
+                return existing;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > threshold)
+            rehash();
+        return -1;
+    }
+
+    void rehash() {
+        int[] oldKeys = keys, oldValues = values;
+        allocate(2 * oldKeys.length);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == -1)
+                continue;
+            int slot = CSRGraph.mix(oldKeys[i]) & mask;
+            while (values[slot] != -1)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
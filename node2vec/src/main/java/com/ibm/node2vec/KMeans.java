@@ -0,0 +1,566 @@
+package com.ibm.node2vec;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Lloyd's k-means over the rows of one contiguous row-major float matrix (e.g. the
+ * normalized vectors of NormalizedRows), with the points split into chunks that are
+ * processed in parallel on a ForkJoinPool of numThreads threads.
+ *
+ * The seeds are chosen by k-means++, each step of which (updating the distance of
+ * every point to its nearest seed) is a parallel pass over the points, pruned with the
+ * triangle inequality: a point is skipped when the new seed is at least twice as far
+ * from its nearest seed as it is. k-means|| (Bahmani et al.: a few rounds that pick
+ * about 2k candidates each, then k-means++ over the candidates weighted by the points
+ * nearest to them) can be selected instead; it takes fewer passes, which only pays off
+ * when they are spread over many cores.
+ *
+ * The assignment step prunes the distance computations with Hamerly's bounds: each
+ * point keeps an upper bound on the distance to its center and a lower bound on the
+ * distance to any other one, which are loosened by how much the centers move. A point
+ * is rescanned only when its upper bound exceeds both its lower bound and half the
+ * distance of its center to the nearest other center. A rescan goes through the
+ * nearest other centers of its center (up to MAX_NEIGHBORS of them, sorted by distance
+ * at each iteration) and stops at the first one too far away to be the nearest, or
+ * else compares the point to all the centers. When k-means++ chooses the seeds, the
+ * points are assigned to them by the seeding already. The sums of the clusters are
+ * updated by the moves of the reassigned points only.
+ *
+ * The iterations stop when at most tolerance x n points change clusters (or after
+ * maxIterations). The results depend on the seed only, not on the number of threads.
+ *
+ * @author dganguly
+ */
+public class KMeans {
+    static final int CHUNK = 4096; // points per parallel task
+    static final int SEEDING_ROUNDS = 5; // of k-means||
+    static final int MAX_NEIGHBORS = 128; // of each center, sorted by distance
+
+    final int k;
+    final int maxIterations;
+    final double tolerance;
+    final long seed;
+    final int numThreads;
+    boolean parallelSeeding; // k-means|| (else k-means++)
+    boolean verbose;
+
+    // the data and the results
+    float[] x;
+    int n, dims;
+    float[] centroids;
+    int[] assignments;
+    int iterations;
+    float[] seedDist; // squared distance of each point to its nearest seed, if the seeding assigned them
+
+    /**
+     * @param k Number of clusters.
+     * @param maxIterations Maximum number of iterations (after the seeding).
+     * @param tolerance Stop when at most this fraction of the points change clusters.
+     * @param seed Seed of the random choices.
+     * @param numThreads Number of threads.
+     */
+    public KMeans(int k, int maxIterations, double tolerance, long seed, int numThreads) {
+        this.k = k;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.seed = seed;
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /** Seeds with k-means|| instead of k-means++. */
+    public KMeans setParallelSeeding(boolean parallelSeeding) {
+        this.parallelSeeding = parallelSeeding;
+        return this;
+    }
+
+    /** Prints the progress of the iterations. */
+    public KMeans setVerbose(boolean verbose) {
+        this.verbose = verbose;
+        return this;
+    }
+
+    /** The centroids, row after row (k x dims). */
+    public float[] centroids() { return centroids; }
+
+    /** The cluster of each point. */
+    public int[] assignments() { return assignments; }
+
+    /** The number of iterations done. */
+    public int iterations() { return iterations; }
+
+    /** The number of clusters (less than k when there are fewer points). */
+    public int numClusters() { return centroids.length / Math.max(1, dims); }
+
+    /**
+     * Clusters the n rows of the row-major matrix x (of dims columns).
+     * @return The cluster of each point (also given by assignments()).
+     */
+    public int[] fit(float[] x, int n, int dims) {
+        this.x = x;
+        this.n = n;
+        this.dims = dims;
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            long t0 = System.currentTimeMillis();
+            int numClusters = Math.min(k, n);
+            centroids = new float[numClusters * dims];
+            assignments = null;
+            seedDist = null;
+            int[] seeds = parallelSeeding? kmeansParallelSeeds(pool, numClusters) : kmeansPlusPlusSeeds(pool, numClusters);
+            for (int c = 0; c < numClusters; c++)
+                System.arraycopy(x, seeds[c] * dims, centroids, c * dims, dims);
+            if (verbose)
+                System.out.println(String.format("k-means: %d seeds chosen in %.2fs", numClusters, (System.currentTimeMillis() - t0) / 1000.0));
+
+            lloyd(pool, numClusters);
+            if (verbose)
+                System.out.println(String.format("k-means: %d points, %d clusters, %d iterations in %.2fs, inertia %.4f",
+                        n, numClusters, iterations, (System.currentTimeMillis() - t0) / 1000.0, inertia()));
+            return assignments;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /** The sum of the squared distances of the points to their centroids. */
+    public double inertia() {
+        DotKernel kernel = DotKernel.get();
+        double sum = 0;
+        for (int i = 0; i < n; i++)
+            sum += kernel.squaredDistance(x, i * dims, centroids, assignments[i] * dims, dims);
+        return sum;
+    }
+
+    // Runs body(chunk) for each chunk of the points, in parallel
+    void forEachChunk(ForkJoinPool pool, IntConsumer body) {
+        int numChunks = (n + CHUNK - 1) / CHUNK;
+        pool.submit(() -> IntStream.range(0, numChunks).parallel().forEach(body)).join();
+    }
+
+    // A uniform double in [0, 1) for the point i of round r (splitmix64 of the seed,
+    // the round and the point), so that the parallel choices don't depend on the threads
+    double uniform(int round, int i) {
+        long z = seed + (((long)round << 32) | i) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    // Lowers minDist (and sets nearest) of every point with the distances to the
+    // candidates [from, to) of the points listed in candidates, and returns the sum
+    // of minDist over each chunk. With seedDist (the squared distances of the earlier
+    // candidates to the only new one), the points the new candidate can't be nearer to
+    // are skipped: by the triangle inequality, that's when it is at least twice as far
+    // from their nearest candidate as they are.
+    double[] updateNearest(ForkJoinPool pool, int[] candidates, int from, int to, float[] minDist, int[] nearest, float[] seedDist) {
+        DotKernel kernel = DotKernel.get();
+        double[] partial = new double[(n + CHUNK - 1) / CHUNK];
+        forEachChunk(pool, chunk -> {
+            double s = 0;
+            for (int i = chunk * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) {
+                if (seedDist == null || minDist[i] == Float.MAX_VALUE || seedDist[nearest[i]] < 4 * minDist[i]) {
+                    for (int c = from; c < to; c++) {
+                        float d = kernel.squaredDistance(x, i * dims, x, candidates[c] * dims, dims);
+                        if (d < minDist[i]) {
+                            minDist[i] = d;
+                            nearest[i] = c;
+                        }
+                    }
+                }
+                s += minDist[i];
+            }
+            partial[chunk] = s;
+        });
+        return partial;
+    }
+
+    // k-means++ over all the points: each seed is drawn with a probability
+    // proportional to the squared distance to the nearest seed so far. Each step is
+    // a parallel pass over the points (pruned by the triangle inequality), and the
+    // draw goes to a chunk by the sums of the chunks before going through its points.
+    int[] kmeansPlusPlusSeeds(ForkJoinPool pool, int numClusters) {
+        Random rnd = new Random(seed);
+        int[] seeds = new int[numClusters];
+        float[] minDist = new float[n];
+        Arrays.fill(minDist, Float.MAX_VALUE);
+        int[] nearest = new int[n];
+        float[] seedDist = new float[numClusters];
+        DotKernel kernel = DotKernel.get();
+        seeds[0] = rnd.nextInt(n);
+        for (int c = 1; ; c++) {
+            int last = seeds[c - 1];
+            for (int j = 0; j < c - 1; j++)
+                seedDist[j] = kernel.squaredDistance(x, seeds[j] * dims, x, last * dims, dims);
+            double[] partial = updateNearest(pool, seeds, c - 1, c, minDist, nearest, c > 1? seedDist : null);
+            if (c == numClusters) {
+                // the points are assigned to their nearest seeds already
+                assignments = nearest;
+                this.seedDist = minDist;
+                return seeds;
+            }
+            seeds[c] = draw(minDist, partial, rnd);
+        }
+    }
+
+    // A point drawn with a probability proportional to its weight, given the sums
+    // of the weights of each chunk
+    int draw(float[] weights, double[] partial, Random rnd) {
+        double total = 0;
+        for (double p : partial)
+            total += p;
+        double r = rnd.nextDouble() * total;
+        for (int chunk = 0; chunk < partial.length; chunk++) {
+            if (r >= partial[chunk]) {
+                r -= partial[chunk];
+                continue;
+            }
+            for (int i = chunk * CHUNK, to = Math.min(n, i + CHUNK); i < to; i++) {
+                r -= weights[i];
+                if (r < 0 && weights[i] > 0)
+                    return i;
+            }
+            break; // rounding errors
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            if (weights[i] > 0)
+                return i;
+        }
+        return rnd.nextInt(n); // all the points are on the seeds
+    }
+
+    // Index drawn with a probability proportional to weights[i] * counts[i] among
+    // [0, size), where total is the sum of these
+    static int draw(float[] weights, int[] counts, int size, double total, Random rnd) {
+        double r = rnd.nextDouble() * total;
+        int last = 0;
+        for (int i = 0; i < size; i++) {
+            double w = (double)weights[i] * counts[i];
+            if (w <= 0)
+                continue;
+            last = i;
+            r -= w;
+            if (r < 0)
+                return i;
+        }
+        return last; // rounding errors
+    }
+
+    // k-means||: SEEDING_ROUNDS rounds of oversampling (2 k expected candidates per
+    // round), then k-means++ over the candidates weighted by the points nearest to them
+    int[] kmeansParallelSeeds(ForkJoinPool pool, int numClusters) {
+        float[] minDist = new float[n];
+        Arrays.fill(minDist, Float.MAX_VALUE);
+        int[] nearest = new int[n];
+        int[] candidates = new int[] { new Random(seed).nextInt(n) };
+        int numCandidates = 1;
+        boolean[] picked = new boolean[n];
+        picked[candidates[0]] = true;
+        double[] partial = updateNearest(pool, candidates, 0, 1, minDist, nearest, null);
+
+        double oversampling = 2.0 * numClusters;
+        int numChunks = (n + CHUNK - 1) / CHUNK;
+        for (int round = 1; round <= SEEDING_ROUNDS; round++) {
+            double sum = 0;
+            for (double p : partial)
+                sum += p;
+            final double phi = sum;
+            if (phi <= 0)
+                break;
+            final int r = round;
+            int[][] chosen = new int[numChunks][];
+            forEachChunk(pool, chunk -> {
+                int[] buff = new int[16];
+                int size = 0;
+                for (int i = chunk * CHUNK, to = Math.min(n, i + CHUNK); i < to; i++) {
+                    if (!picked[i] && uniform(r, i) < oversampling * minDist[i] / phi) {
+                        if (size == buff.length)
+                            buff = Arrays.copyOf(buff, 2 * size);
+                        buff[size++] = i;
+                    }
+                }
+                chosen[chunk] = Arrays.copyOf(buff, size);
+            });
+            int from = numCandidates;
+            for (int[] c : chosen) {
+                if (numCandidates + c.length > candidates.length)
+                    candidates = Arrays.copyOf(candidates, Math.max(2 * candidates.length, numCandidates + c.length));
+                for (int i : c) {
+                    picked[i] = true;
+                    candidates[numCandidates++] = i;
+                }
+            }
+            partial = updateNearest(pool, candidates, from, numCandidates, minDist, nearest, null);
+        }
+
+        if (numCandidates <= numClusters) {
+            // too few (e.g. many duplicate points): complete with k-means++ over the points
+            Random rnd = new Random(seed);
+            int[] seeds = Arrays.copyOf(candidates, numClusters);
+            for (int c = numCandidates; c < numClusters; c++) {
+                seeds[c] = draw(minDist, partial, rnd);
+                partial = updateNearest(pool, seeds, c, c + 1, minDist, nearest, null);
+            }
+            return seeds;
+        }
+
+        // weighted k-means++ over the candidates
+        int[] weights = new int[numCandidates];
+        for (int i = 0; i < n; i++)
+            weights[nearest[i]]++;
+        Random rnd = new Random(seed);
+        int[] chosenCandidates = new int[numClusters];
+        float[] candDist = new float[numCandidates];
+        Arrays.fill(candDist, Float.MAX_VALUE);
+        chosenCandidates[0] = weightedFirst(weights, rnd);
+        DotKernel kernel = DotKernel.get();
+        for (int c = 1; c < numClusters; c++) {
+            int last = candidates[chosenCandidates[c - 1]];
+            double total = 0;
+            for (int j = 0; j < numCandidates; j++) {
+                float d = kernel.squaredDistance(x, candidates[j] * dims, x, last * dims, dims);
+                if (d < candDist[j])
+                    candDist[j] = d;
+                total += (double)candDist[j] * weights[j];
+            }
+            chosenCandidates[c] = total > 0? draw(candDist, weights, numCandidates, total, rnd) : c;
+            candDist[chosenCandidates[c]] = 0; // not to be drawn again
+        }
+        int[] seeds = new int[numClusters];
+        for (int c = 0; c < numClusters; c++)
+            seeds[c] = candidates[chosenCandidates[c]];
+        return seeds;
+    }
+
+    // A candidate drawn with a probability proportional to its weight
+    static int weightedFirst(int[] weights, Random rnd) {
+        long total = 0;
+        for (int w : weights)
+            total += w;
+        long r = (long)(rnd.nextDouble() * total);
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0)
+                return i;
+        }
+        return weights.length - 1;
+    }
+
+    // Lloyd iterations with Hamerly's bounds
+    void lloyd(ForkJoinPool pool, int numClusters) {
+        DotKernel kernel = DotKernel.get();
+        float[] upper = new float[n]; // >= distance to the own center
+        float[] lower = new float[n]; // <= distance to any other center
+        float[] halfGap = new float[numClusters]; // half the distance to the nearest other center
+        int numNeighbors = Math.min(numClusters - 1, MAX_NEIGHBORS);
+        int[] neighbors = new int[numClusters * numNeighbors]; // of each center, the nearest first
+        float[] neighborDist = new float[numClusters * numNeighbors];
+        float[] cutoff = new float[numClusters]; // distance to the nearest center not in the list
+        float[] moved = new float[numClusters]; // how much each center moved in the last update
+        double[] sums = new double[numClusters * dims];
+        int[] counts = new int[numClusters];
+        int numChunks = (n + CHUNK - 1) / CHUNK;
+        int[][] changes = new int[numChunks][]; // per chunk: point, old cluster, point, old cluster...
+        int[] numChanges = new int[numChunks];
+
+        if (assignments == null) {
+            // first assignment: a full scan of every point
+            assignments = new int[n];
+            forEachChunk(pool, chunk -> {
+                for (int i = chunk * CHUNK, to = Math.min(n, i + CHUNK); i < to; i++)
+                    scan(kernel, i, numClusters, upper, lower);
+            });
+        }
+        else {
+            // assigned by the seeding, with no lower bound
+            for (int i = 0; i < n; i++)
+                upper[i] = (float)Math.sqrt(seedDist[i]);
+            seedDist = null;
+        }
+        for (int i = 0; i < n; i++) {
+            int c = assignments[i];
+            counts[c]++;
+            for (int d = 0; d < dims; d++)
+                sums[c * dims + d] += x[i * dims + d];
+        }
+        float[] old = new float[numClusters * dims];
+
+        for (iterations = 1; iterations <= maxIterations; iterations++) {
+            // move the centers to the means of their points
+            System.arraycopy(centroids, 0, old, 0, old.length);
+            fixEmptyClusters(counts, sums, upper, lower);
+            for (int c = 0; c < numClusters; c++) {
+                for (int d = 0; d < dims; d++)
+                    centroids[c * dims + d] = (float)(sums[c * dims + d] / counts[c]);
+                moved[c] = (float)Math.sqrt(kernel.squaredDistance(centroids, c * dims, old, c * dims, dims));
+            }
+            int farthest = 0, second = -1;
+            for (int c = 1; c < numClusters; c++) {
+                if (moved[c] > moved[farthest]) {
+                    second = farthest;
+                    farthest = c;
+                }
+                else if (second < 0 || moved[c] > moved[second])
+                    second = c;
+            }
+            final int r1 = farthest, r2 = second;
+
+            // the nearest other centers of each center
+            ThreadLocal<long[]> scratch = ThreadLocal.withInitial(() -> new long[numClusters]);
+            pool.submit(() -> IntStream.range(0, numClusters).parallel().forEach(c -> {
+                // distance (non-negative, so its bits sort as a long) and index
+                long[] sorted = scratch.get();
+                for (int o = 0; o < numClusters; o++) {
+                    float d = o == c? Float.MAX_VALUE : (float)Math.sqrt(kernel.squaredDistance(centroids, c * dims, centroids, o * dims, dims));
+                    sorted[o] = (long)Float.floatToIntBits(d) << 32 | o;
+                }
+                Arrays.sort(sorted);
+                for (int j = 0; j < numNeighbors; j++) {
+                    neighbors[c * numNeighbors + j] = (int)sorted[j];
+                    neighborDist[c * numNeighbors + j] = Float.intBitsToFloat((int)(sorted[j] >>> 32));
+                }
+                cutoff[c] = numNeighbors < numClusters - 1? Float.intBitsToFloat((int)(sorted[numNeighbors] >>> 32)) : Float.MAX_VALUE;
+                halfGap[c] = 0.5f * Float.intBitsToFloat((int)(sorted[0] >>> 32));
+            })).join();
+
+            // loosen the bounds by the moves, and rescan the points they no longer pin down
+            forEachChunk(pool, chunk -> {
+                int[] buff = changes[chunk] != null? changes[chunk] : new int[64];
+                int size = 0;
+                for (int i = chunk * CHUNK, to = Math.min(n, i + CHUNK); i < to; i++) {
+                    int a = assignments[i];
+                    upper[i] += moved[a];
+                    lower[i] -= a == r1? (r2 >= 0? moved[r2] : 0) : moved[r1];
+                    float bound = Math.max(halfGap[a], lower[i]);
+                    if (upper[i] <= bound)
+                        continue;
+                    upper[i] = (float)Math.sqrt(kernel.squaredDistance(x, i * dims, centroids, a * dims, dims));
+                    if (upper[i] <= bound)
+                        continue;
+                    if (2 * upper[i] < cutoff[a])
+                        scanNeighbors(kernel, i, a, neighbors, neighborDist, numNeighbors, cutoff[a], upper, lower);
+                    else
+                        scan(kernel, i, numClusters, upper, lower);
+                    if (assignments[i] != a) {
+                        if (size + 2 > buff.length)
+                            buff = Arrays.copyOf(buff, 2 * buff.length);
+                        buff[size++] = i;
+                        buff[size++] = a;
+                    }
+                }
+                changes[chunk] = buff;
+                numChanges[chunk] = size;
+            });
+
+            // move the reassigned points between the sums
+            long changed = 0;
+            for (int chunk = 0; chunk < numChunks; chunk++) {
+                int[] buff = changes[chunk];
+                for (int j = 0; j < numChanges[chunk]; j += 2) {
+                    int i = buff[j], from = buff[j + 1], to = assignments[i];
+                    counts[from]--;
+                    counts[to]++;
+                    for (int d = 0; d < dims; d++) {
+                        float v = x[i * dims + d];
+                        sums[from * dims + d] -= v;
+                        sums[to * dims + d] += v;
+                    }
+                }
+                changed += numChanges[chunk] / 2;
+            }
+            if (verbose)
+                System.out.println(String.format("k-means: iteration %d, %d points changed clusters", iterations, changed));
+            if (changed <= tolerance * n)
+                break;
+        }
+        iterations = Math.min(iterations, maxIterations);
+
+        // the final centers
+        fixEmptyClusters(counts, sums, upper, lower);
+        for (int c = 0; c < numClusters; c++) {
+            for (int d = 0; d < dims; d++)
+                centroids[c * dims + d] = (float)(sums[c * dims + d] / counts[c]);
+        }
+    }
+
+    // Assigns point i to its nearest center, with the distances to the nearest and
+    // the second nearest centers as its bounds
+    void scan(DotKernel kernel, int i, int numClusters, float[] upper, float[] lower) {
+        int best = 0;
+        float d1 = Float.MAX_VALUE, d2 = Float.MAX_VALUE;
+        for (int c = 0; c < numClusters; c++) {
+            float d = kernel.squaredDistance(x, i * dims, centroids, c * dims, dims);
+            if (d < d1) {
+                d2 = d1;
+                d1 = d;
+                best = c;
+            }
+            else if (d < d2)
+                d2 = d;
+        }
+        assignments[i] = best;
+        upper[i] = (float)Math.sqrt(d1);
+        lower[i] = (float)Math.sqrt(d2);
+    }
+
+    // Assigns point i, at the distance upper[i] of its center a, to its nearest center
+    // by going through the neighbors of a: a center c can be nearer than the nearest so
+    // far (at d1) only if d(a, c) < upper[i] + d1, and the ones beyond are at least
+    // d(a, c) - upper[i] away, which bounds the distance to the second nearest
+    void scanNeighbors(DotKernel kernel, int i, int a, int[] neighbors, float[] neighborDist, int numNeighbors,
+            float cutoff, float[] upper, float[] lower) {
+        float u = upper[i];
+        int best = a;
+        float d1 = u, d2 = Float.MAX_VALUE, beyond = cutoff;
+        for (int j = a * numNeighbors, end = j + numNeighbors; j < end; j++) {
+            if (neighborDist[j] >= u + d1) {
+                beyond = neighborDist[j];
+                break;
+            }
+            int c = neighbors[j];
+            float d = (float)Math.sqrt(kernel.squaredDistance(x, i * dims, centroids, c * dims, dims));
+            if (d < d1) {
+                d2 = d1;
+                d1 = d;
+                best = c;
+            }
+            else if (d < d2)
+                d2 = d;
+        }
+        assignments[i] = best;
+        upper[i] = d1;
+        lower[i] = Math.min(d2, beyond - u);
+    }
+
+    // Gives an empty cluster the point that is the farthest from its center (by its
+    // upper bound), whose bounds are reset so that it is rescanned
+    void fixEmptyClusters(int[] counts, double[] sums, float[] upper, float[] lower) {
+        for (int c = 0; c < counts.length; c++) {
+            if (counts[c] > 0)
+                continue;
+            int far = -1;
+            for (int i = 0; i < n; i++) {
+                if (counts[assignments[i]] > 1 && (far < 0 || upper[i] > upper[far]))
+                    far = i;
+            }
+            if (far < 0)
+                continue; // can't happen with k <= n
+            int from = assignments[far];
+            counts[from]--;
+            counts[c]++;
+            for (int d = 0; d < dims; d++) {
+                float v = x[far * dims + d];
+                sums[from * dims + d] -= v;
+                sums[c * dims + d] += v;
+            }
+            assignments[far] = c;
+            upper[far] = Float.MAX_VALUE;
+            lower[far] = 0;
+        }
+    }
+}
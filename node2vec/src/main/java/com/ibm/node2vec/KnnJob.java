@@ -0,0 +1,118 @@
+package com.ibm.node2vec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Exact k nearest neighbours (by cosine similarity) of every row of a VectorRows
+ * against all the others, i.e. the all-pairs job behind WordVecs.computeAndStoreNNs.
+ *
+ * The vectors are L2-normalized once (NormalizedRows), and each batch of BATCH
+ * consecutive rows is scored against all of them as a blocked matrix product,
+ * each row keeping its best k in a bounded min-heap (TopK), so nothing of size N
+ * is allocated or sorted per row.
+ *
+ * The batches run as tasks on a ForkJoinPool; run() writes them out in row order
+ * as they complete, keeping a bounded number of them in flight.
+ *
+ * @author dganguly
+ */
+public class KnnJob {
+    static final int BATCH = 256;
+
+    final VectorRows vecs;
+    final NormalizedRows normalized;
+    final int n;
+    final int k;
+    final int numThreads;
+
+    /**
+     * @param vecs The vectors.
+     * @param normalized The normalized vectors (null to normalize them here).
+     * @param k Number of neighbours of each row (not counting itself).
+     * @param numThreads Size of the fork-join pool.
+     */
+    public KnnJob(VectorRows vecs, NormalizedRows normalized, int k, int numThreads) {
+        this.vecs = vecs;
+        this.normalized = normalized != null? normalized : new NormalizedRows(vecs);
+        this.n = vecs.rows();
+        this.k = Math.min(k, Math.max(0, n - 1));
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Computes the neighbours of the rows [from, to) into heaps[0, to-from)
+     * (which are cleared first); a row is never its own neighbour.
+     */
+    public void search(int from, int to, TopK[] heaps) {
+        int[] exclude = new int[to - from];
+        for (int i = 0; i < exclude.length; i++)
+            exclude[i] = from + i;
+        normalized.search(normalized.matrix, from, to - from, exclude, heaps);
+    }
+
+    /**
+     * Computes the neighbours of all the rows and writes them out, one line per row
+     * in row order: the id, a space and the ids of the neighbours (most similar
+     * first) separated by ':', the format read by WordVecs.initNN.
+     * @param out Where to write.
+     * @param progressEvery Print a progress line every these many rows (0 for none).
+     */
+    public void run(Writer out, int progressEvery) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            ArrayDeque<ForkJoinTask<String>> inFlight = new ArrayDeque<>();
+            int maxInFlight = 4 * numThreads;
+            int done = 0, nextProgress = progressEvery;
+
+            for (int from = 0; from < n || !inFlight.isEmpty(); ) {
+                while (from < n && inFlight.size() < maxInFlight) {
+                    int batchFrom = from, batchTo = Math.min(n, from + BATCH);
+                    inFlight.add(pool.submit(() -> formatBatch(batchFrom, batchTo)));
+                    from = batchTo;
+                }
+                out.write(inFlight.poll().get());
+                done = Math.min(n, done + BATCH);
+                if (progressEvery > 0 && done >= nextProgress) {
+                    System.out.println("Finished for " + done + " words...");
+                    nextProgress += progressEvery;
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while computing the nearest neighbours", ex);
+        }
+        catch (ExecutionException ex) {
+            throw new IOException("Failed to compute the nearest neighbours", ex.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    String formatBatch(int from, int to) {
+        TopK[] heaps = new TopK[to - from];
+        for (int i = 0; i < heaps.length; i++)
+            heaps[i] = new TopK(k);
+        search(from, to, heaps);
+
+        StringBuilder buff = new StringBuilder((to - from) * (k + 1) * 8);
+        for (int q = from; q < to; q++) {
+            TopK heap = heaps[q - from];
+            heap.sort();
+            buff.append(vecs.id(q)).append(' ');
+            for (int i = 0; i < heap.size(); i++) {
+                if (i > 0)
+                    buff.append(':');
+                buff.append(vecs.id(heap.id(i)));
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+}
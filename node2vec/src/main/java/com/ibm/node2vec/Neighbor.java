@@ -0,0 +1,28 @@
+package com.ibm.node2vec;
+
+/**
+ * An (immutable) result of a nearest neighbour query: the id and row of a vector
+ * and its similarity to the query.
+ *
+ * @author dganguly
+ */
+public final class Neighbor {
+    final String id;
+    final int row;
+    final float score;
+
+    public Neighbor(String id, int row, float score) {
+        this.id = id;
+        this.row = row;
+        this.score = score;
+    }
+
+    public String getId() { return id; }
+
+    public int getRow() { return row; }
+
+    public float getScore() { return score; }
+
+    @Override
+    public String toString() { return id + ":" + score; }
+}
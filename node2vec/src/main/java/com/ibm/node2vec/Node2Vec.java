@@ -0,0 +1,1143 @@
+package com.ibm.node2vec;
+
+
+import java.io.*;
+import static java.lang.System.exit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import com.ibm.modularity.ModularityLoader;
+
+/**
+ * A Java port of node2vec.c
+ *
+ * node2vec is an algorithmic framework for representational learning on graphs.
+ * Given any graph, it can learn continuous feature representations for the nodes,
+ * which can then be used for various downstream machine learning tasks.
+ *
+ * Concretely, given a graph, node2vec produces vector representations for each node.
+ *
+ * // Copyright 2013 Google Inc. All Rights Reserved.
+ * //
+ * //  Licensed under the Apache License, Version 2.0 (the "License");
+ * //  you may not use this file except in compliance with the License.
+ * //  You may obtain a copy of the License at
+ * //
+ * //      http://www.apache.org/licenses/LICENSE-2.0
+ * //
+ * //  Unless required by applicable law or agreed to in writing, software
+ * //  distributed under the License is distributed on an "AS IS" BASIS,
+ * //  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * //  See the License for the specific language governing permissions and
+ * //  limitations under the License.
+ *
+ * @author marting, debasis
+ * */
+
+/*
+Translation notes:
+Here is the type mapping I tried first:
+
+typedef float real -> float
+typedef char byte -> boolean if it represents a 1/0 (usually used for booleans)
+char* -> String
+anything* -> Anything or Anything[] (TODO: see if List<Anything> are better)
+
+
+THERE IS A BUG in the C code: l 327-328
+    should be if (!directed) then add the reverse edge
+
+Confirmed that:
+    RNG is preserved
+    Word hash is NOT preserved: GetWordHash mixes String.hashCode() (CSRGraph.mix) into
+    a power-of-2 table that grows with the vocab, instead of the C code's fixed-size
+    table of 257-based hashes. The vocab ids don't depend on it (SortVocab orders the
+    words by count, then name)
+    'float' should be equivalent in Java and C
+ */
+
+public class Node2Vec {
+
+    public static final int EXP_TABLE_SIZE = 1000;
+    public static final int MAX_EXP = 6;
+    public static final int MAX_LINE_SIZE = 10000;
+    public static final int MAX_SENTENCE_LENGTH = 1000;
+    public static final int MAX_CODE_LENGTH = 40;
+    public static final int MAX_CONTEXT_PATH_LEN = 1000;
+    public static final int SEED = 123456;
+    public static final int PROGRESS_STEP = 1000; // source nodes a thread trains on between two updates of the progress
+
+    // Initial size (a power of 2) of the vocab hash; it is doubled whenever the vocab
+    // fills more than VOCAB_HASH_LOAD of it (so the probes stay short and always terminate).
+    public static final int INITIAL_VOCAB_HASH_SIZE = 1 << 19;
+    public static final float VOCAB_HASH_LOAD = 0.7f;
+
+    // The graph, with the out-edges of node i at [offsets[i], offsets[i+1])
+    CSRGraph graph;
+    // The sampling contexts of each node (for adjSampling), laid out the same way
+    CSRGraph multiHopContexts;
+    float p1, q1;
+    String partitionFile;
+    ModularityLoader seedPartitions;
+    boolean community_sampling; // draw positives within and negatives outside the seed communities
+    CommunitySampler communitySampler;
+    BiasedWalkSampler walkSampler;
+    long sampler_memory_mb = 1024; // budget for the per-edge alias tables of pqSampling
+    int hub_degree = 256; // out-degree above which neighbour tests use a hashed/bitset index
+
+    // represents a node structure (its edges are in the graph, at index id)
+    public static class vocab_node {
+        public int id; // the id (hash index) of the word
+        // TODO: char* originally, see if String fits
+        public String word;
+        public int cn; // out degree
+    }
+
+    InputStream train_file;
+    OutputStream output_file, output_file_vec;
+    vocab_node[] vocab;
+    int debug_mode = 2; int window = 10; int min_count = 0;
+    boolean pqsampling;
+    int[] vocab_hash; //int *vocab_hash;
+    int vocab_hash_size = INITIAL_VOCAB_HASH_SIZE;
+    int vocab_max_size = 1000; int vocab_size = 0; int layer1_size = 100;
+    int train_nodes = 0; int iter = 5; boolean directed = true;
+    int num_threads = 1;
+    Word2VecRandom[] train_random; // the generator of each training thread, for all the epochs
+    int num_samplers = 0; // threads sampling the walks for the training threads (0 = each thread samples its own)
+    int walk_buffers = 0; // blocks of walks in flight between the samplers and the trainers (0 = 4 per thread)
+    WalkPipeline pipeline;
+    String walks_mode = "sample"; // sample, write (sample and save to walk_file) or replay (from walk_file)
+    String walk_file;
+    WalkFile.Writer walkWriter;
+    WalkFile.Reader walkReader;
+    boolean binary_output; // write the vectors in the binary format instead of text
+    DotKernel kernel = DotKernel.get(); // dot products and updates of skipgram (see DotKernel)
+    float starting_alpha = 0.025f;
+    float min_alpha = -1; // the floor of the decay of alpha (< 0: starting_alpha * 1e-4, as in word2vec)
+    boolean alpha_decay = true; // decay alpha linearly with the progress of the training (else keep it constant)
+    volatile float alpha = 0.025f; // the current learning rate
+    int report_secs = 10; // seconds between two progress lines
+    // Progress of the training over all the epochs, shared by the threads: the source
+    // nodes and the pairs done, the start time and the time of the last progress line (ms)
+    final AtomicLong nodes_done = new AtomicLong(), pairs_done = new AtomicLong();
+    final AtomicLong last_report = new AtomicLong();
+    long train_start;
+    // TODO: last one might be a pointer to a cell in 'syn0' (in this case, turn to int)
+    float[] syn0, syn1, syn1neg, expTable, pt_syn0;
+    float onehop_pref = 0.7f;
+    float one_minus_onehop_pref;
+    int negative = 5;
+    AliasTable unigram; // negative sampling distribution
+    InputStream pretrained_file;
+    
+    // TODO: probably a pointer to a byte array
+    //char* pt_word_buff;
+    //int pt_word_buff;
+    WordVecs ptWordVecs; // pre-trained word vectors
+
+    Properties props;
+
+    public Node2Vec() { props = new Properties(); }
+    
+    public Node2Vec(String propFile) throws IOException {
+        props = new Properties();
+        props.load(new FileReader(propFile));
+        readParameters();
+    }
+
+    final void readParameters() throws FileNotFoundException {
+        train_file = new FileInputStream(props.getProperty("graphfile"));
+        output_file = new FileOutputStream(props.getProperty("outfile"));
+        
+        layer1_size = Integer.parseInt(props.getProperty("node2vec.layer1_size", "128"));
+        onehop_pref = Float.parseFloat(props.getProperty("node2vec.onehop_pref", "0.7"));
+        starting_alpha = Float.parseFloat(props.getProperty("node2vec.alpha", "0.025"));
+        min_alpha = Float.parseFloat(props.getProperty("node2vec.min_alpha", "-1"));
+        alpha_decay = Boolean.parseBoolean(props.getProperty("node2vec.alpha_decay", "true"));
+        report_secs = Integer.parseInt(props.getProperty("node2vec.report_secs", "10"));
+        directed = Boolean.parseBoolean(props.getProperty("node2vec.directed", "true"));
+        window = Integer.parseInt(props.getProperty("node2vec.window", "5"));
+        negative = Integer.parseInt(props.getProperty("node2vec.ns", "10"));
+        iter = Integer.parseInt(props.getProperty("node2vec.niters", "10"));
+        pqsampling = Boolean.parseBoolean(props.getProperty("node2vec.pqsampling", "true"));
+        min_count = Integer.parseInt(props.getProperty("node2vec.mincount", "1"));
+        p1 = Float.parseFloat(props.getProperty("node2vec.p1", "0.5"));
+        q1 = Float.parseFloat(props.getProperty("node2vec.q1", "0.5"));
+        debug_mode = Integer.parseInt(props.getProperty("trace", "3"));
+        num_threads = Integer.parseInt(props.getProperty("node2vec.threads", "1"));
+        num_samplers = Integer.parseInt(props.getProperty("node2vec.samplers", "0"));
+        walk_buffers = Integer.parseInt(props.getProperty("node2vec.walk_buffers", "0"));
+        walks_mode = props.getProperty("node2vec.walks", "sample");
+        walk_file = props.getProperty("node2vec.walkfile");
+        binary_output = props.getProperty("node2vec.outformat", "text").equals("bin");
+        sampler_memory_mb = Long.parseLong(props.getProperty("node2vec.sampler.memory_mb", "1024"));
+        hub_degree = Integer.parseInt(props.getProperty("node2vec.hub_degree", "256"));
+        kernel = DotKernel.forName(props.getProperty("node2vec.kernel", kernel.name()));
+        community_sampling = Boolean.parseBoolean(props.getProperty("node2vec.community_sampling", "false"));
+    }
+    
+    final void loadFiles() {
+        try {
+            if (pretrained_file == null) {
+                String ptFile = props.getProperty("node2vec.ptfile");
+                if (ptFile != null)
+                    pretrained_file = new FileInputStream(ptFile);
+            }
+
+            if (partitionFile == null)
+                partitionFile = props.getProperty("partition.file");
+            
+            if (partitionFile != null) {
+                seedPartitions = new ModularityLoader(partitionFile);
+            }                
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+    
+    public void setInput(InputStream input) {
+        train_file = input;
+    }
+
+    public void setOutput(OutputStream output) {
+        output_file = output;
+    }
+
+    // The negative samples are drawn with prob proportional to cn^0.75 (as with the
+    // unigram table of word2vec), from an alias table of vocab_size entries instead of
+    // a fixed table of 1e8 ints; the powers are summed up in double precision.
+    void InitUnigramTable() {
+        double power = 0.75;
+        double[] weights = new double[vocab_size];
+        for (int a = 0; a < vocab_size; a++) weights[a] = Math.pow(vocab[a].cn, power);
+        unigram = new AliasTable(weights);
+
+        // with the same weights within each community of the seed partition
+        if (community_sampling && seedPartitions != null)
+            communitySampler = new CommunitySampler(seedPartitions, weights, unigram);
+        else if (community_sampling)
+            System.out.println("No seed partition (partition.file): community sampling is off");
+    }
+
+    // Adds the nodes read by the GraphLoader to the vocab, each with its number of
+    // occurrences (as src or dest) as count. Merging the chunks in order adds the
+    // nodes in order of first occurrence in the file, as a line by line read would.
+    // Returns the vocab entry of each local node id of each chunk.
+    vocab_node[][] learnVocab(List<GraphLoader.Chunk> chunks) {
+        vocab_node[][] nodes = new vocab_node[chunks.size()][];
+        IntIntHashMap numeric_ids = new IntIntHashMap(); // numeric node id -> index in vocab
+        int a, i, value;
+
+        for (int c = 0; c < chunks.size(); c++) {
+            GraphLoader.Chunk chunk = chunks.get(c);
+            nodes[c] = new vocab_node[chunk.size()];
+            for (int local = 0; local < chunk.size(); local++) {
+                // fast path: a numeric node seen in an earlier chunk is found
+                // without making a String of its name
+                value = chunk.numericValue(local);
+                i = value >= 0? numeric_ids.get(value) : -1;
+                if (i >= 0) {
+                    vocab[i].cn += chunk.count(local);
+                    nodes[c][local] = vocab[i];
+                    continue;
+                }
+
+                String node_id = chunk.word(local);
+                i = SearchVocab(node_id);
+                if (i == -1) {
+                    a = AddWordToVocab(node_id);
+                    vocab[a].cn = chunk.count(local);
+                    i = a;
+                }
+                else vocab[i].cn += chunk.count(local);
+                if (value >= 0) numeric_ids.putIfAbsent(value, i);
+                nodes[c][local] = vocab[i];
+            }
+        }
+        return nodes;
+    }
+
+    // Returns hash value of a word, i.e. its slot in vocab_hash.
+    // Unlike the C code (hash = hash * 257 + ch, mod the table size), this scrambles the
+    // (cached) String hash code: with linear probing, the C hash of node ids such as
+    // "1".."999999" puts consecutive ids in consecutive slots, and the probes get long.
+    // The slot of a word doesn't affect the training, only the look-up time.
+    int GetWordHash(String word) {
+        return CSRGraph.mix(word.hashCode()) & (vocab_hash_size - 1);
+    }
+
+    // Returns position of a word in the vocabulary; if the word is not found, returns -1
+    int SearchVocab(String word) {
+        int hash = GetWordHash(word);
+        while (true) {
+            if (vocab_hash[hash] == -1) return -1;
+            if (word.equals(vocab[vocab_hash[hash]].word)) return vocab_hash[hash];
+            hash = (hash + 1) & (vocab_hash_size - 1);
+        }
+    }
+
+    // Adds a word to the vocabulary
+    int AddWordToVocab(String word) {
+        int hash, id;
+        // Grow the hash before the word is counted in vocab_size, else the rehash would
+        // already insert it and the probe below would insert it a second time
+        if (vocab_size + 1 > VOCAB_HASH_LOAD * vocab_hash_size)
+            ResizeVocabHash(2 * vocab_hash_size);
+        vocab[vocab_size] = new vocab_node();
+        vocab[vocab_size].word = word;
+        vocab[vocab_size].cn = 0;
+
+        vocab_size++;
+        // Reallocate memory if needed (geometrically, so that adding n words is O(n))
+        if (vocab_size + 2 >= vocab_max_size) {
+            vocab_max_size += Math.max(1000, vocab_max_size / 2);
+            vocab = Arrays.copyOf(vocab, vocab_max_size);
+        }
+        hash = GetWordHash(word);
+        while (vocab_hash[hash] != -1) hash = (hash + 1) & (vocab_hash_size - 1);
+
+        id = vocab_size - 1;
+        vocab_hash[hash] = id;
+        // vocab_size-1 is the index of the current word... save it in the node object
+        vocab[id].id = id;
+        //printf("\n%s Adding word",word);
+        return id;
+    }
+
+    // Rebuilds the hash with a new size (the words are at the same positions in vocab)
+    void ResizeVocabHash(int size) {
+        int hash;
+        vocab_hash_size = size;
+        vocab_hash = new int[vocab_hash_size];
+        Arrays.fill(vocab_hash, -1);
+        for (int a = 0; a < vocab_size; a++) {
+            if (vocab[a] == null) continue;
+            hash = GetWordHash(vocab[a].word);
+            while (vocab_hash[hash] != -1) hash = (hash + 1) & (vocab_hash_size - 1);
+            vocab_hash[hash] = a;
+        }
+    }
+
+    // Used later for sorting by out degrees
+    int VocabCompare(vocab_node a, vocab_node b) {
+        if (b.cn != a.cn)
+            return b.cn - a.cn;
+        else return a.word.compareTo(b.word);
+    }
+
+    // Sorts the vocabulary by frequency using word counts
+    void SortVocab() {
+        int a, size;
+        int hash;
+        // Sort the vocabulary and keep </s> at the first position
+        // in C, qsort uses the count as second parameter, in Java, sort uses the upper bound (excluded)
+        //qsort(&vocab[1], vocab_size - 1, sizeof(struct vocab_node), VocabCompare);
+        Arrays.sort(vocab, 1, vocab_size, new Comparator<vocab_node>() {
+            @Override
+            public int compare(vocab_node o1, vocab_node o2) {
+                return VocabCompare(o1, o2);
+            }
+        });
+        for (a = 0; a < vocab_hash_size; a++) vocab_hash[a] = -1;
+        size = vocab_size;
+        train_nodes = 0;
+        for (a = 0; a < size; a++) {
+            // Nodes with out-degree less than min_count times will be discarded from the vocab
+            if ((vocab[a].cn < min_count) && (a != 0)) {
+                vocab_size--;
+                vocab[a].id = -1; // discarded (its edges are dropped)
+                vocab[a] = null;
+            } else {
+                // Hash will be re-computed, as after the sorting it is not actual
+                hash=GetWordHash(vocab[a].word);
+                while (vocab_hash[hash] != -1) hash = (hash + 1) & (vocab_hash_size - 1);
+                vocab_hash[hash] = a;
+                vocab[a].id = a;
+                train_nodes += vocab[a].cn;
+            }
+        }
+        vocab = Arrays.copyOf(vocab, vocab_size + 1);
+    }
+
+    // Lays out the edges read by the GraphLoader as CSR over the (sorted) vocab ids;
+    // edges with an end-point that has been discarded from the vocab are dropped.
+    // For the undirected option, the reverse edges are added.
+    // As before, a node with out-edges gets its out-degree as count; the others
+    // keep their occurrence count.
+    void buildGraph(List<GraphLoader.Chunk> chunks, vocab_node[][] nodes) {
+        long dropped = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            GraphLoader.Chunk chunk = chunks.get(c);
+            chunk.remap = new int[chunk.size()];
+            for (int local = 0; local < chunk.size(); local++) {
+                chunk.remap[local] = nodes[c][local].id;
+                if (chunk.remap[local] < 0) dropped++;
+            }
+        }
+        if (dropped > 0 && debug_mode > 1)
+            System.out.println(String.format("Dropping the edges of %d nodes with out-degree less than %d", dropped, min_count));
+
+        graph = GraphLoader.buildGraph(vocab_size, chunks, directed);
+        for (int a = 0; a < vocab_size; a++) {
+            if (graph.degree(a) > 0)
+                vocab[a].cn = graph.degree(a);
+        }
+    }
+
+    // an important step is to normalize the edge weights to probabilities
+    // of samples that would be used later on during sampling nodes
+    // from this pre-built context.
+    // Appends the context of src_node_index to the builder; visited is a scratch
+    // array of flags (all false on entry and on exit).
+    void preComputePathContextForSrcNode(int src_node_index, CSRGraph.Builder contexts, boolean[] visited) {
+        int i = 0, j, num_one_hops;  // index into the context buffer
+        int[] ctx = new int[Math.min(graph.degree(src_node_index), MAX_CONTEXT_PATH_LEN)];
+        boolean[] twohop = new boolean[ctx.length];
+
+        // First, collect a set of one hop nodes from this source node
+        for (int e = graph.offsets[src_node_index]; e < graph.offsets[src_node_index + 1]; e++) {
+            // visit a one-hop node from source
+            int dest = graph.targets[e];
+            if (!visited[dest] && i < ctx.length) {
+                ctx[i++] = e;
+                visited[dest] = true;
+            }
+        }
+        num_one_hops = i;
+
+        // iterate over the one hops collected to reach the 2 hops (that are not one-hop connections)
+        // (as in the earlier port, a one-hop node is already visited, so nothing gets added here)
+        for (j = 0; j < num_one_hops; j++) {
+            int dest = graph.targets[ctx[j]];
+            if (!visited[dest] && dest != src_node_index && i < ctx.length) { // dest != src_node avoids cycles!
+                ctx[i] = ctx[j];
+                twohop[i++] = true;
+                visited[dest] = true;
+            }
+        }
+
+        // reset the visited flags (for next call to the function)
+        for (j = 0; j < i; j++) {
+            int dest = graph.targets[ctx[j]];
+            float wt = graph.weights[ctx[j]] * (twohop[j] ? one_minus_onehop_pref : onehop_pref);  // prob of one-hop vs two-hop
+            contexts.addEdge(src_node_index, dest, wt);
+            visited[dest] = false;
+        }
+    }
+
+    // Precompute the set of max-hop nodes for each source node.
+    void preComputePathContexts() {
+        CSRGraph.Builder contexts = new CSRGraph.Builder();
+        boolean[] visited = new boolean[vocab_size];
+
+        for (int i = 0; i < vocab_size; i++) {
+            preComputePathContextForSrcNode(i, contexts, visited);
+            if (debug_mode > 3)
+                System.out.println(String.format("Precomputed contexts for node %d (%s)", i, vocab[i].word));
+        }
+        multiHopContexts = contexts.build(vocab_size);
+    }
+
+    // Sample a context of size <window>
+    // contextBuff is an o/p parameter
+    // Note: the draws advance the caller's generator. The earlier port passed
+    // next_random by value, so every draw of a call (and every call with the same
+    // state) saw the same number; walks now differ from step to step as in the C code.
+    int adjSampling(int src_node_index, Word2VecRandom next_random, int[] contextBuff) {
+        int len, from;
+        float x, cumul_p, z, norm_wt;
+
+        // see how many 2-hop adj neighbors we have got for this node
+        from = multiHopContexts.offsets[src_node_index]; // buffer to sample from
+        len = multiHopContexts.degree(src_node_index);
+        if (debug_mode > 2)
+            System.out.println(String.format("#nodes in 2-hop neighborhood = %d", len));
+
+        len = Math.min(len, window); //len = window < len ? window : len;
+        if (len == 0)
+            return 0;
+
+        // normalize the weights so that they sum to 1;
+        z = 0;
+        for (int i = 0; i < len; i++) {
+            z += multiHopContexts.weights[from + i];
+        }
+
+        if (debug_mode > 2)
+            System.out.print("Sampled context: ");
+
+        int j = 0, pIndex;
+        for (int i = 0; i < window; i++) {  // draw 'window' samples
+
+            x = next_random.nextFloat();
+            cumul_p = 0;
+
+            // Find out in which interval does this belong to...
+            for (pIndex = 0; pIndex < len - 1; pIndex++) {
+                norm_wt = multiHopContexts.weights[from + pIndex] / z;
+                if (cumul_p <= x && x < cumul_p + norm_wt)
+                    break;
+                cumul_p += norm_wt;
+            }
+
+            // save sampled nodes in context
+            contextBuff[j++] = multiHopContexts.targets[from + pIndex];
+            if (debug_mode > 2)
+                System.out.print(String.format("%s ", vocab[contextBuff[j - 1]].word));
+        }
+        if (debug_mode > 2) System.out.println();;
+        return j;
+    }
+
+    // Each line in this graph file is of the following format:
+    // <src-node-id>\t<dest-node-id>[\t<weight of this edge>]
+    // The file is parsed once (memory-mapped, in parallel chunks) by the GraphLoader;
+    // the vocab and the graph are then built from what it collected.
+    void LearnVocabFromTrainFile() throws IOException {
+        if (debug_mode > 2)
+            System.out.println("Loading nodes from graph file...");
+
+        long t0 = System.currentTimeMillis();
+        List<GraphLoader.Chunk> chunks = new GraphLoader(num_threads).parse(train_file);
+
+        vocab_size = 0;
+        ResizeVocabHash(INITIAL_VOCAB_HASH_SIZE);
+        vocab_node[][] nodes = learnVocab(chunks);
+
+        SortVocab();
+        if (debug_mode > 2) {
+            System.out.println(String.format("#nodes: %d", vocab_size));
+        }
+
+        // then build the actual graph
+        buildGraph(chunks, nodes);
+        if (debug_mode > 1)
+            System.out.println(String.format("Loaded %d nodes, %d edges in %.2fs",
+                    vocab_size, graph.numEdges(), (System.currentTimeMillis() - t0) / 1000.0));
+
+        if (debug_mode > 2)
+            System.out.println("Loaded graph in memory...");
+
+        if (seedPartitions != null)
+            indexPartitions();
+
+        if (walks_mode.equals("replay")) {
+            // the walks are read from the walk file: no sampler to set up
+        }
+        else if (!pqsampling) {
+            preComputePathContexts();
+            if (debug_mode > 2)
+                System.out.println("Successfully initialized path contexts");
+        }
+        else {
+            initWalkSampler();
+        }
+    }
+
+    // Lays out the communities of the seed partition by the ids of the vocab, for the
+    // overlap test of every positive pair in trainContext
+    void indexPartitions() {
+        String[] names = new String[vocab_size];
+        for (int a = 0; a < vocab_size; a++)
+            names[a] = vocab[a].word;
+        seedPartitions.index(names);
+        if (debug_mode > 1)
+            System.out.println(String.format("Seed partition: %d %s communities",
+                    seedPartitions.numCommunities(), seedPartitions.isDisjoint()? "disjoint" : "overlapping"));
+    }
+
+    // Opens the walk file to save the sampled walks to or to replay (once the vocab is known)
+    void openWalkFile() throws IOException {
+        if (walks_mode.equals("sample"))
+            return;
+        if (walk_file == null)
+            throw new IllegalArgumentException("No walk file (node2vec.walkfile) to " + walks_mode + " the walks");
+
+        if (walks_mode.equals("write")) {
+            walkWriter = new WalkFile.Writer(new File(walk_file), this);
+        }
+        else if (walks_mode.equals("replay")) {
+            walkReader = new WalkFile.Reader(new File(walk_file), this);
+            System.out.println(String.format("Replaying the %d epoch(s) of walks of %s (%s, p=%s, q=%s, window=%d)",
+                    walkReader.epochs, walk_file, walkReader.pqsampling? "pqSampling" : "adjSampling",
+                    walkReader.p, walkReader.q, walkReader.window));
+            window = walkReader.window; // the length of the walks of the file
+        }
+        else
+            throw new IllegalArgumentException("Unknown walks mode: " + walks_mode + " (sample, write or replay)");
+    }
+
+    // Precomputes the alias tables used by pqSampling, after sorting the
+    // adjacency lists for the neighbour tests (the walk distribution doesn't
+    // depend on the edge order; the adjSampling contexts do, hence not earlier).
+    void initWalkSampler() {
+        graph.sortAdjacency();
+        graph.indexHubs(hub_degree);
+        walkSampler = new BiasedWalkSampler(graph, p1, q1, sampler_memory_mb << 20);
+        if (debug_mode > 1)
+            System.out.println(String.format("Walk sampler: %s, %.1f MB of alias tables",
+                    walkSampler.hasEdgeTables()? "per-edge alias tables" : "rejection sampling",
+                    walkSampler.memoryUsed() / (double)(1 << 20)));
+    }
+    
+    void loadPretrained() {
+        int ptFileNumWords, ptFileVecSize;
+        int i;
+        
+        try {
+            ptWordVecs = new WordVecs(pretrained_file, props);
+            
+            // get num words and dimension of each
+            ptFileNumWords = ptWordVecs.getVocabSize();
+            ptFileVecSize = ptWordVecs.getDimension();
+            
+            assert(ptFileVecSize == layer1_size);
+            
+            pt_syn0 = new float[ptFileNumWords * layer1_size];
+
+            // try to match each node-id (word) of the pt file with the existing vocab
+            // (loaded from train file)...
+            // if a node in the pt file matches with a node of the current graph
+            // then change its (initial) vector to the one read from the pt file
+            // if a match is not found, during the later stages, the vector
+            // goes as-is to the o/p file
+            for (WordVec wvec: ptWordVecs.wordvecmap.values()) {
+                int index = SearchVocab(wvec.word);
+                if (index >= 0) {
+                    // copy the vector as read from the pt file
+                    System.arraycopy(wvec.vec, 0, syn0[index * layer1_size], 0, layer1_size);
+                }
+            }
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        
+        
+    }
+    
+    void InitNet() {
+        Word2VecRandom next_random = new Word2VecRandom(1);
+
+        syn0 = new float[vocab_size * layer1_size];
+        if (negative > 0) {
+            syn1neg = new float[vocab_size * layer1_size];
+        }
+
+        // Initialize the net weights from a pretrained model
+        // The file to be loaded is a binary file saved by word2vec.
+        // This is to ensure that the word vectors will not be trained
+        if (pretrained_file != null) {
+            loadPretrained();
+        }
+        
+        // Random initialization if a current node doesn't exist in the pre-trained file
+        // or the pre-trained file doesn't exist itself
+        for (int a = 0; a < vocab_size; a++) { // iterate over current nodes
+            String word = vocab[a].word;
+            float[] wvec = ptWordVecs==null? null : ptWordVecs.getVec(word).vec;
+            
+            if (wvec == null) { // current word doesn't exist in pt file... hence proceed to random init            
+                for (int b = 0; b < layer1_size; b++) {
+                    syn0[a * layer1_size + b] = (next_random.nextFloat() - 0.5f) / layer1_size;//Initialize by random nos
+                }
+            }
+        }
+    }
+    
+    //+++DG: Added the functionality for p-q sampling
+    // Each step is drawn in O(1) from the precomputed alias tables of walkSampler
+    // (see BiasedWalkSampler for the transition probabilities).
+    // As with adjSampling, each step advances the caller's generator.
+    int pqSampling(int src_node_index, Word2VecRandom next_random, int[] contextBuff) {
+        int prev, cur, prev_edge, e;
+        int j = 0;
+
+        if (graph.degree(src_node_index) == 0) return 0;
+
+        if (debug_mode > 2)        
+            System.out.println("Random walk from " + vocab[src_node_index].word + " (" + src_node_index + ")");
+
+        prev = cur = src_node_index;
+        prev_edge = -1;
+        while (j < window) {
+            e = walkSampler.step(prev, cur, prev_edge, next_random);
+            if (e >= 0) { // else a dead end: keep repeating the last node
+                prev = cur;
+                cur = graph.targets[e];
+                prev_edge = e;
+            }
+            contextBuff[j++] = cur;
+        }
+        return j;
+    }
+    
+    //---DG
+
+    // Trains skip-gram on the walks sampled from the source nodes in [start, end).
+    // Each worker thread calls this on its own partition with its own RNG state,
+    // context buffer and gradient scratch; syn0 and syn1neg are shared and updated
+    // without any locks (Hogwild), the same way the threads in word2vec.c do.
+    // Returns the number of (source, context) pairs trained on.
+    long skipgram(int start, int end, Word2VecRandom next_random, int[] contextBuff, float[] neu1e) {
+        int context_len;
+        long pairs = 0, pairs_reported = 0;
+
+        for (int word = start; word < end; word++) {
+            if (word > start && (word - start) % PROGRESS_STEP == 0) {
+                progress(PROGRESS_STEP, pairs - pairs_reported);
+                pairs_reported = pairs;
+            }
+
+            if (debug_mode > 2) {
+                System.out.println(String.format("Skip-gram iteration for source word %s", vocab[word].word));
+                System.out.println("Word occurs " + vocab[word].cn + " times");
+            }
+
+            // context sampled for each node
+            context_len = sampleContext(word, next_random, contextBuff);
+
+            // train skip-gram on node contexts
+            pairs += trainContext(word, contextBuff, 0, context_len, next_random, neu1e);
+        }
+        if (end > start)
+            progress((end - start - 1) % PROGRESS_STEP + 1, pairs - pairs_reported);
+        return pairs;
+    }
+
+    // Called by a training thread with the source nodes and the pairs it has done since
+    // its last call. As word2vec does with the words, alpha decays linearly with the
+    // source nodes done over all the epochs, from starting_alpha down to min_alpha.
+    // Every report_secs seconds, one of the threads prints a progress line.
+    void progress(long nodes, long pairs) {
+        long done = nodes_done.addAndGet(nodes);
+        long all_pairs = pairs_done.addAndGet(pairs);
+        long total = (long)iter * vocab_size;
+        if (alpha_decay) {
+            float floor = min_alpha >= 0? min_alpha : starting_alpha * 0.0001f;
+            alpha = Math.max(floor, (float)(starting_alpha * (1 - done / (double)(total + 1))));
+        }
+
+        if (debug_mode > 0) {
+            long now = System.currentTimeMillis(), last = last_report.get();
+            if (now - last >= report_secs * 1000L && last_report.compareAndSet(last, now)) {
+                double secs = Math.max(0.001, (now - train_start) / 1000.0);
+                long eta = (long)((total - done) * secs / Math.max(1, done));
+                System.out.println(String.format("Alpha: %f  Progress: %.2f%%  Nodes/s: %.0f  Pairs/s: %.0f  ETA: %02d:%02d:%02d",
+                        alpha, 100.0 * done / Math.max(1, total), done / secs, all_pairs / secs,
+                        eta / 3600, eta / 60 % 60, eta % 60));
+            }
+        }
+    }
+
+    // The context (walk) of a source node, with the sampler of the run
+    int sampleContext(int word, Word2VecRandom next_random, int[] contextBuff) {
+        return !pqsampling?
+            adjSampling(word, next_random, contextBuff):
+            pqSampling(word, next_random, contextBuff);
+    }
+
+    // Trains skip-gram on the pairs of a source node (word) and each node of its
+    // context context[from, from+context_len); next_random draws the negative samples.
+    // Returns the number of pairs trained on.
+    long trainContext(int word, int[] context, int from, int context_len, Word2VecRandom next_random, float[] neu1e) {
+        int last_word;
+        int l1, l2, target, label;
+        float f, g;
+        float alpha = this.alpha;
+        int skipped = 0;
+
+        for (int a = from; a < from + context_len; a++) {
+            last_word = context[a];
+
+            // Additional check for the community... Only allow +ve pairs in
+            // the training if they have the same community or the intersection
+            // of their communities is not null.
+            boolean toIncludeInTraining = seedPartitions==null? true: seedPartitions.overlapInCommunity(word, last_word);
+
+            // With community sampling, a pair across communities is replaced by a
+            // positive pair within the community of the source node (rather than
+            // trained with label 0), or skipped if the community has no other node.
+            if (!toIncludeInTraining && communitySampler != null) {
+                if (!communitySampler.hasCommunity(word))
+                    toIncludeInTraining = true; // no community to go by: an ordinary pair
+                else if ((last_word = communitySampler.positive(word, next_random)) >= 0)
+                    toIncludeInTraining = true;
+                else {
+                    skipped++;
+                    continue;
+                }
+            }
+
+            l1 = last_word * layer1_size;
+
+            //memset(neu1e, 0, layer1_size * sizeof(real));
+            Arrays.fill(neu1e, 0);
+
+            // NEGATIVE SAMPLING
+            if (negative > 0)
+                for (int d = 0; d < negative + 1; d++) {
+                    if (d==0) {
+                        target = word;
+                        label = toIncludeInTraining? 1 : 0; // +ve example
+                    }
+                    else { // -ve samples
+                        target = communitySampler != null?
+                                communitySampler.negative(word, next_random) :
+                                unigram.sample(next_random);
+                        if (target == word) continue;
+                        label = 0;
+                    }
+                    l2 = target * layer1_size;
+                    f = kernel.dot(syn0, l1, syn1neg, l2, layer1_size);
+                    // compute gradient
+                    if (f > MAX_EXP) g = (label - 1) * alpha;
+                    else if (f < -MAX_EXP) g = (label - 0) * alpha;
+                    else g = (label - expTable[(int)((f + MAX_EXP) * (EXP_TABLE_SIZE / MAX_EXP / 2))]) * alpha;
+
+                    kernel.axpy(g, syn1neg, l2, neu1e, 0, layer1_size);
+                    kernel.axpy(g, syn0, l1, syn1neg, l2, layer1_size);
+                }
+
+            // Learn weights input -> hidden
+            kernel.axpy(1, neu1e, 0, syn0, l1, layer1_size);
+        }
+        return context_len - skipped;
+    }
+
+    // One worker of the parallel training: owns a contiguous slice of the source nodes
+    // and everything that must not be shared between threads.
+    class TrainThread extends Thread {
+        final int id, start, end;
+        final Word2VecRandom next_random;
+        final int[] contextBuff = new int[MAX_CONTEXT_PATH_LEN];
+        final float[] neu1e = new float[layer1_size];
+        long pairs;
+        long elapsed; // ms
+
+        TrainThread(int id, int start, int end, Word2VecRandom next_random) {
+            super("node2vec-train-" + id);
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.next_random = next_random;
+        }
+
+        @Override
+        public void run() {
+            long t0 = System.currentTimeMillis();
+            pairs = skipgram(start, end, next_random, contextBuff, neu1e);
+            elapsed = System.currentTimeMillis() - t0;
+        }
+    }
+
+    // One epoch of skip-gram over every source node, split across num_threads threads.
+    // With num_samplers > 0, the walks are instead sampled by threads of their own and
+    // handed over to the num_threads training threads (see WalkPipeline), which is
+    // also how the walks are saved to or replayed from a walk file.
+    void skipgram() throws IOException {
+        if (num_samplers > 0 || walkWriter != null || walkReader != null) {
+            if (pipeline == null) {
+                int nsamplers = Math.max(1, num_samplers), nthreads = Math.max(1, num_threads);
+                pipeline = new WalkPipeline(this, nsamplers, nthreads,
+                        walk_buffers > 0? walk_buffers : 4 * (nsamplers + nthreads));
+                pipeline.writer = walkWriter;
+                pipeline.reader = walkReader;
+            }
+            pipeline.runEpoch();
+            return;
+        }
+
+        int nthreads = train_random.length;
+        TrainThread[] threads = new TrainThread[nthreads];
+        long t0 = System.currentTimeMillis();
+
+        for (int t = 0; t < nthreads; t++) {
+            int start = (int)((long)vocab_size * t / nthreads);
+            int end = (int)((long)vocab_size * (t + 1) / nthreads);
+            threads[t] = new TrainThread(t, start, end, train_random[t]);
+        }
+
+        if (nthreads == 1) {
+            threads[0].run(); // no need to spawn for the sequential case
+        }
+        else {
+            for (TrainThread thread : threads) thread.start();
+            try {
+                for (TrainThread thread : threads) thread.join();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for training threads", ex);
+            }
+        }
+
+        if (debug_mode > 1) {
+            long totalPairs = 0;
+            for (TrainThread thread : threads) {
+                totalPairs += thread.pairs;
+                System.out.println(String.format("Thread %d: %d nodes, %d pairs in %.2fs (%.0f pairs/s)",
+                        thread.id, thread.end - thread.start, thread.pairs,
+                        thread.elapsed / 1000.0, thread.pairs * 1000.0 / Math.max(1, thread.elapsed)));
+            }
+            long elapsed = System.currentTimeMillis() - t0;
+            System.out.println(String.format("Epoch: %d pairs in %.2fs (%.0f pairs/s) using %d thread(s)",
+                    totalPairs, elapsed / 1000.0, totalPairs * 1000.0 / Math.max(1, elapsed), nthreads));
+        }
+        if (debug_mode > 2)
+            System.out.println("Skipgram training done...");
+    }
+    
+    public boolean train() throws IOException {
+        
+        System.out.println("Starting training using input graph.");
+        LearnVocabFromTrainFile();
+
+        if (output_file == null) { System.err.println("Graph file not found"); return false; }
+        InitNet();
+
+        if (negative > 0) InitUnigramTable();
+        System.out.println("Unigram table initialized...");
+
+        // one generator per training thread, carried over from one epoch to the next
+        train_random = new Word2VecRandom[Math.max(1, Math.min(num_threads, vocab_size))];
+        for (int t = 0; t < train_random.length; t++)
+            train_random[t] = new Word2VecRandom(SEED + t);
+
+        openWalkFile();
+        alpha = starting_alpha;
+        nodes_done.set(0);
+        pairs_done.set(0);
+        train_start = System.currentTimeMillis();
+        last_report.set(train_start);
+        try {
+            for (int i=0; i < iter; i++)
+                skipgram();
+        }
+        finally {
+            if (walkWriter != null) {
+                walkWriter.close();
+                System.out.println(String.format("Saved %d epoch(s) of walks to %s (%.1f MB)",
+                        walkWriter.epochs, walk_file, walkWriter.size() / (double)(1 << 20)));
+            }
+            if (walkReader != null)
+                walkReader.close();
+        }
+
+        output_file_vec = output_file;
+        if (binary_output)
+            saveVectorsBinary();
+        else
+            saveVectors();
+        return true;
+    }
+
+    // Save the word vectors (text format)
+    void saveVectors() throws IOException {
+        try (BufferedWriter fo = new BufferedWriter(new OutputStreamWriter(output_file_vec))) {
+            // No need to write out the header... the load of WordVecs can manage this
+            for (int a = 0; a < vocab_size; a++) {
+                fo.write(String.format("%s ", vocab[a].word));
+                for (int b = 0; b < layer1_size; b++)
+                    fo.write(String.format("%f ", syn0[a * layer1_size + b]));
+                fo.newLine();
+            }
+
+            // Write out the rest of the node vectors from the pt file
+            // have to keep in mind that the words that were matched with
+            // the current graph nodes are already written... so just need to
+            // write out the ones that don't match a node of the current (train) graph
+            if (ptWordVecs != null) {
+                for (WordVec wvec: ptWordVecs.wordvecmap.values()) {
+                    int index = SearchVocab(wvec.word);
+                    if (index >= 0)
+                        continue;
+
+                    fo.write(String.format("%s ", wvec.word));
+                    for (int b = 0; b < wvec.vec.length; b++)
+                        fo.write(String.format("%f ", wvec.vec[b]));
+                    fo.newLine();
+                }
+            }
+        }
+    }
+
+    // Save the word vectors in the (memory-mappable) binary format of BinaryVecFile;
+    // same rows, in the same order, as the text format.
+    void saveVectorsBinary() throws IOException {
+        List<WordVec> ptOnly = new ArrayList<>();
+        if (ptWordVecs != null) {
+            for (WordVec wvec: ptWordVecs.wordvecmap.values()) {
+                if (SearchVocab(wvec.word) < 0)
+                    ptOnly.add(wvec);
+            }
+        }
+
+        String[] ids = new String[vocab_size + ptOnly.size()];
+        for (int a = 0; a < vocab_size; a++)
+            ids[a] = vocab[a].word;
+        for (int a = 0; a < ptOnly.size(); a++)
+            ids[vocab_size + a] = ptOnly.get(a).word;
+
+        try (BinaryVecFile.Writer fo = new BinaryVecFile.Writer(output_file_vec, ids, layer1_size)) {
+            for (int a = 0; a < vocab_size; a++)
+                fo.writeRow(syn0, a * layer1_size);
+            for (WordVec wvec: ptOnly)
+                fo.writeRow(wvec.vec, 0);
+        }
+    }
+
+    int ArgPos(String str, int argc, String[] args) {
+        for (int a = 0; a < argc; a++) if (args[a].equals(str)) {
+            if (a == argc - 1) {
+                System.out.println(String.format("Argument missing for %s", str));
+                exit(1);
+            }
+            return a;
+        }
+        return -1;
+    }
+
+    /** Main program as originally used in command line */
+    public boolean run(int argc, String[] argv) throws IOException {
+        int i;
+       	System.out.print("Node2Vec toolkit v 0.1c\n\n");
+        System.out.print("Command Line Options:\n");
+        System.out.print("Parameters for training:\n");
+        System.out.print("\t-train <file>\n");
+        System.out.print("\t\tGraph file (each line a node: <node-id> \t [<node-id>:<weight>]*)\n");
+        System.out.print("\t-pt <file>\n");
+        System.out.print("\t\tPre-trained vectors for nodes (word2vec bin file format)\n");
+        System.out.print("\t-output <file>\n");
+        System.out.print("\t\tUse <file> to save the resulting word vectors / word clusters\n");
+        System.out.print("\t-binary <0/1>\n");
+        System.out.print("\t\tSave the vectors in binary (memory-mappable) format instead of text; default is 0\n");
+        System.out.print("\t-size <int>\n");
+        System.out.print("\t\tSet size of word vectors; default is 100\n");
+        System.out.print("\t-window <int>\n");
+        System.out.print("\t\tContext (random walk) length.\n");
+        System.out.print("\t-negative <int>\n");
+        System.out.print("\t\tNumber of negative examples; default is 5, common values are 3 - 10 (0 = not used)\n");
+        System.out.print("\t-iter <int>\n");
+        System.out.print("\t\tRun more training iterations (default 5)\n");
+        System.out.print("\t-min-count <int>\n");
+        System.out.print("\t\tNodes with out-degree less than min-count are discarded; default is 5\n");
+        System.out.print("\t-alpha <float>\n");
+        System.out.print("\t\tSet the starting learning rate; default is 0.025 for skip-gram\n");
+        System.out.print("\t-min-alpha <float>\n");
+        System.out.print("\t\tThe learning rate decays linearly down to this value; default is alpha * 0.0001\n");
+        System.out.print("\t-decay <0/1>\n");
+        System.out.print("\t\tDecay the learning rate (else keep it constant); default is 1\n");
+        System.out.print("\t-threads <int>\n");
+        System.out.print("\t\tUse <int> threads for training (Hogwild updates); default is 1\n");
+        System.out.print("\t-samplers <int>\n");
+        System.out.print("\t\tUse <int> threads to sample the walks for the training threads; default is 0 (each samples its own)\n");
+        System.out.print("\t-walks <sample/write/replay>\n");
+        System.out.print("\t\tSample the walks; also save them to the walk file; or replay them from it; default is sample\n");
+        System.out.print("\t-walkfile <file>\n");
+        System.out.print("\t\tThe walk file to write or replay\n");
+        System.out.print("\t-kernel <name>\n");
+        System.out.print("\t\tVector kernel (scalar, unrolled, vector or auto); default is auto\n");
+        System.out.print("\t-partitions <file>\n");
+        System.out.print("\t\tSeed partition (a community of nodes per line): pairs across communities get label 0\n");
+        System.out.print("\t-comm-sampling <0/1>\n");
+        System.out.print("\t\tWith a seed partition, draw the positives within and the negatives outside the communities; default is 0\n");
+        System.out.print("\t-sampler-mem <int>\n");
+        System.out.print("\t\tMemory budget (MB) for precomputed p-q transition tables, else rejection sampling; default is 1024\n");
+        System.out.print("\t-directed <0/1>\n");
+        System.out.print("\t\twhether the graph is directed (if undirected, reverse edges are automatically added when the i/p fmt is edge list>\n");
+        System.out.print("\nExample:\n");
+        System.out.print("./node2vec -pt ptnodes.vec -train graph.txt -output ovec -size 200 -window 5 -sample 1e-4 -negative 5 -iter 3\n\n");
+        
+        if ((i = ArgPos("-props", argc, argv)) >= 0) {
+            props.load(new FileReader(argv[i + 1]));
+            readParameters();
+        }
+        
+        // override the argument values from properties
+        if ((i = ArgPos("-partitions", argc, argv)) >= 0) partitionFile = argv[i + 1];
+        if ((i = ArgPos("-size", argc, argv)) >= 0) layer1_size = Integer.parseInt(argv[i + 1]);
+        if ((i = ArgPos("-onehop_pref", argc, argv)) > 0) onehop_pref = Float.parseFloat(argv[i + 1]);
+        if ((i = ArgPos("-trace", argc, argv)) >= 0) debug_mode = Integer.parseInt(argv[i + 1]);
+        if ((i = ArgPos("-train", argc, argv)) >= 0) train_file = new FileInputStream(argv[i + 1]);
+        if ((i = ArgPos("-alpha", argc, argv)) >= 0) starting_alpha = Float.parseFloat(argv[i + 1]);
+        if ((i = ArgPos("-min-alpha", argc, argv)) >= 0) min_alpha = Float.parseFloat(argv[i + 1]);
+        if ((i = ArgPos("-decay", argc, argv)) >= 0) alpha_decay = Integer.parseInt(argv[i + 1]) != 0;
+        if ((i = ArgPos("-output", argc, argv)) >= 0) output_file = new FileOutputStream(argv[i + 1]);
+        if ((i = ArgPos("-directed", argc, argv)) >= 0) directed = Integer.parseInt(argv[i + 1]) != 0;
+        if ((i = ArgPos("-pt", argc, argv)) > 0) pretrained_file = new FileInputStream(argv[i + 1]);
+        if ((i = ArgPos("-window", argc, argv)) >= 0) window = Integer.parseInt(argv[i + 1]);
+        if ((i = ArgPos("-negative", argc, argv)) >= 0) negative = Integer.parseInt(argv[i + 1]);
+        if ((i = ArgPos("-iter", argc, argv)) >= 0) iter = Integer.parseInt(argv[i + 1]);
+        if ((i = ArgPos("-min-count", argc, argv)) >= 0) min_count = Integer.parseInt(argv[i + 1]);
+        if ((i = ArgPos("-dbfs", argc, argv)) >= 0) pqsampling = Boolean.parseBoolean(argv[i + 1]);
+        if ((i = ArgPos("-p", argc, argv)) > 0) p1 = Float.parseFloat(argv[i + 1]);
+        if ((i = ArgPos("-q", argc, argv)) > 0) q1 = Float.parseFloat(argv[i + 1]);
+        if ((i = ArgPos("-binary", argc, argv)) >= 0) binary_output = Integer.parseInt(argv[i + 1]) != 0;
+        if ((i = ArgPos("-threads", argc, argv)) >= 0) num_threads = Integer.parseInt(argv[i + 1]);
+        if ((i = ArgPos("-sampler-mem", argc, argv)) >= 0) sampler_memory_mb = Long.parseLong(argv[i + 1]);
+        if ((i = ArgPos("-samplers", argc, argv)) >= 0) num_samplers = Integer.parseInt(argv[i + 1]);
+        if ((i = ArgPos("-walks", argc, argv)) >= 0) walks_mode = argv[i + 1];
+        if ((i = ArgPos("-walkfile", argc, argv)) >= 0) walk_file = argv[i + 1];
+        if ((i = ArgPos("-kernel", argc, argv)) >= 0) kernel = DotKernel.forName(argv[i + 1]);
+        if ((i = ArgPos("-comm-sampling", argc, argv)) >= 0) community_sampling = Integer.parseInt(argv[i + 1]) != 0;
+        DotKernel.setDefault(kernel); // for the similarities of the word vecs too
+
+        System.out.println("Parameters:");
+        System.out.println("p:" + p1);
+        System.out.println("q:" + q1);
+        System.out.println("size:" + layer1_size);
+        System.out.println("window:" + window);
+        System.out.println("ns:" + negative);
+        System.out.println("iter:" + iter);
+        System.out.println("alpha:" + starting_alpha + (alpha_decay? " (linear decay)" : ""));
+        System.out.println("min-count:" + min_count);
+        System.out.println("threads:" + num_threads);
+        System.out.println("samplers:" + num_samplers);
+        System.out.println("walks:" + walks_mode);
+        System.out.println("kernel:" + kernel.name());
+        if (partitionFile != null || props.getProperty("partition.file") != null)
+            System.out.println("community sampling:" + community_sampling);
+        
+        loadFiles();
+        
+        if (window > MAX_CONTEXT_PATH_LEN) {
+            System.out.println(String.format("Window size %d value too large. Truncating the value to %d\n", window, MAX_CONTEXT_PATH_LEN));
+            window = MAX_CONTEXT_PATH_LEN;
+        }
+        initTables();
+        return train();
+    }
+
+    // Allocates the vocab and precomputes the tables that don't depend on the graph
+    // (done by run() once the parameters are set).
+    void initTables() {
+        one_minus_onehop_pref = 1 - onehop_pref;
+        vocab = new vocab_node[vocab_max_size];
+        vocab_hash = new int[vocab_hash_size];
+        expTable = new float[EXP_TABLE_SIZE + 1];
+        for (int i = 0; i < EXP_TABLE_SIZE; i++) {
+            // TODO: C and Java have the same 'exp' function, but need to check floats again
+            expTable[i] = (float)Math.exp((i / (float)EXP_TABLE_SIZE * 2 - 1) * MAX_EXP); // Precompute the exp() table
+            expTable[i] = expTable[i] / (expTable[i] + 1);                   // Precompute f(x) = x / (x + 1)
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: Node2Vec <properties file>");
+            System.err.println("Using default properties file...");
+            
+            args = new String[1];
+            args[0] = "-props init.properties";
+        }
+        
+        Node2Vec cmd = new Node2Vec();
+        cmd.run(args.length, args);
+    }    
+}
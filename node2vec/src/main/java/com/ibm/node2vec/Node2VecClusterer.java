@@ -0,0 +1,209 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.ibm.node2vec;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.apache.commons.math3.ml.clustering.CentroidCluster;
+
+/**
+ *
+ * @author dganguly
+ */
+public class Node2VecClusterer {
+    Properties prop;
+    
+    public Node2VecClusterer(String propFile) throws FileNotFoundException, IOException {
+        prop = new Properties();
+        prop.load(new FileReader(propFile));
+    }
+    
+    public void cluster() throws IOException, Exception {
+        int numClusters = Integer.parseInt(prop.getProperty("node2vec.numclusters"));
+        String engine = prop.getProperty("node2vec.kmeans", "builtin");
+        if (engine.equals("streaming")) {
+            clusterStream(numClusters);
+            return;
+        }
+
+        WordVecs nodevecs = new WordVecs();
+        nodevecs.loadFromFile(new File(prop.getProperty("outfile")));
+        
+        System.out.println("Performing K-means clustering...");
+        if (engine.equals("commons")) {
+            List<CentroidCluster<WordVec>> clusters = nodevecs.clusterWords(numClusters);
+            System.out.println("Writing out clusters...");
+            if (labelsFormat(false))
+                writeLabels(clusters);
+            else
+                writeClusters(clusters);
+            return;
+        }
+
+        // the vectors are normalized (into a copy) so that cosine-dist and Euclidean correlate
+        NormalizedRows normalized = nodevecs.normalizedRows();
+        KMeans kmeans = new KMeans(numClusters,
+                Integer.parseInt(prop.getProperty("node2vec.kmeans.maxiter", "100")),
+                Double.parseDouble(prop.getProperty("node2vec.kmeans.tol", "0.0001")),
+                Long.parseLong(prop.getProperty("node2vec.kmeans.seed", "123456")),
+                numThreads())
+            .setParallelSeeding(prop.getProperty("node2vec.kmeans.init", "kmeans++").equals("kmeans||"))
+            .setVerbose(true);
+        kmeans.fit(normalized.matrix, normalized.rows(), normalized.dims());
+
+        System.out.println("Writing out clusters...");
+        if (labelsFormat(false))
+            writeLabels(nodevecs.rows(), kmeans.assignments());
+        else
+            writeClusters(nodevecs.rows(), kmeans.assignments(), kmeans.numClusters());
+    }
+
+    /**
+     * Clusters the vectors with mini-batch k-means, reading them from the file a batch
+     * at a time (see StreamingKMeans), so that they don't have to fit in memory.
+     * Unless node2vec.cluster.format=clusters, the final pass writes out the cluster of
+     * each node as it goes (see writeLabels).
+     */
+    public void clusterStream(int numClusters) throws IOException {
+        StreamingKMeans kmeans = new StreamingKMeans(numClusters,
+                Integer.parseInt(prop.getProperty("node2vec.kmeans.batch", "10000")),
+                Integer.parseInt(prop.getProperty("node2vec.kmeans.epochs", "3")),
+                Integer.parseInt(prop.getProperty("node2vec.kmeans.sample", "100000")),
+                Long.parseLong(prop.getProperty("node2vec.kmeans.seed", "123456")),
+                numThreads())
+            .setVerbose(true);
+
+        try (VectorStream vectors = VectorStream.open(new File(prop.getProperty("outfile")))) {
+            System.out.println("Performing mini-batch K-means clustering...");
+            kmeans.fit(vectors);
+
+            System.out.println("Writing out clusters...");
+            String clustOutFileName = prop.getProperty("node2vec.cluster.output");
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(clustOutFileName))) {
+                if (labelsFormat(true)) {
+                    kmeans.assign(vectors, (id, cluster) -> {
+                        bw.write(id + "\t" + cluster);
+                        bw.newLine();
+                    });
+                    return;
+                }
+                // one line per cluster: only the ids are held in memory
+                StringBuilder[] members = new StringBuilder[kmeans.numClusters()];
+                for (int c = 0; c < members.length; c++)
+                    members[c] = new StringBuilder();
+                kmeans.assign(vectors, (id, cluster) -> members[cluster].append(id).append(' '));
+                for (StringBuilder line : members) {
+                    bw.write(line.toString());
+                    bw.newLine();
+                }
+            }
+        }
+    }
+
+    int numThreads() {
+        return Integer.parseInt(prop.getProperty("node2vec.kmeans.threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+    }
+
+    // Whether to write the cluster of each node (node2vec.cluster.format=labels) rather
+    // than the nodes of each cluster (clusters)
+    boolean labelsFormat(boolean streaming) {
+        return prop.getProperty("node2vec.cluster.format", streaming? "labels" : "clusters").equals("labels");
+    }
+    
+    public void writeClusters(List<CentroidCluster<WordVec>> clusters) throws IOException {
+        int i = 1;
+        String clustOutFileName = prop.getProperty("node2vec.cluster.output");
+        FileWriter fw = new FileWriter(clustOutFileName);
+        BufferedWriter bw = new BufferedWriter(fw);
+        
+        for (CentroidCluster<WordVec> c : clusters) {
+            List<WordVec> thisClusterPoints = c.getPoints();
+            for (WordVec thisClusterPoint: thisClusterPoints) {
+                bw.write(thisClusterPoint.word + " ");
+            }
+            i++;
+            bw.newLine();
+        }     
+        bw.close(); fw.close();
+    }
+
+    /**
+     * Writes out the clusters of the rows, one line per cluster: the ids of its rows
+     * separated by spaces (in row order), as writeClusters does for the commons clusters.
+     */
+    public void writeClusters(VectorRows rows, int[] assignments, int numClusters) throws IOException {
+        // the rows of each cluster, by counting sort
+        int[] offsets = new int[numClusters + 1];
+        for (int c : assignments)
+            offsets[c + 1]++;
+        for (int c = 0; c < numClusters; c++)
+            offsets[c + 1] += offsets[c];
+        int[] members = new int[assignments.length];
+        int[] next = Arrays.copyOf(offsets, numClusters);
+        for (int row = 0; row < assignments.length; row++)
+            members[next[assignments[row]]++] = row;
+
+        String clustOutFileName = prop.getProperty("node2vec.cluster.output");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(clustOutFileName))) {
+            for (int c = 0; c < numClusters; c++) {
+                for (int i = offsets[c]; i < offsets[c + 1]; i++)
+                    bw.write(rows.id(members[i]) + " ");
+                bw.newLine();
+            }
+        }
+    }
+
+    public void writeLabels(List<CentroidCluster<WordVec>> clusters) throws IOException {
+        String clustOutFileName = prop.getProperty("node2vec.cluster.output");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(clustOutFileName))) {
+            int c = 0;
+            for (CentroidCluster<WordVec> cluster : clusters) {
+                for (WordVec point : cluster.getPoints()) {
+                    bw.write(point.word + "\t" + c);
+                    bw.newLine();
+                }
+                c++;
+            }
+        }
+    }
+
+    /**
+     * Writes out the cluster of each row, one line per row: its id and the number of its
+     * cluster (from 0), separated by a tab.
+     */
+    public void writeLabels(VectorRows rows, int[] assignments) throws IOException {
+        String clustOutFileName = prop.getProperty("node2vec.cluster.output");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(clustOutFileName))) {
+            for (int row = 0; row < assignments.length; row++) {
+                bw.write(rows.id(row) + "\t" + assignments[row]);
+                bw.newLine();
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("usage: Node2VecClusterer <properties file>");
+            System.err.println("Using default properties file...");
+            
+            args = new String[1];
+            args[0] = "node2vec-comm.properties";
+        }
+        
+        try {
+            Node2VecClusterer c = new Node2VecClusterer(args[0]);
+            c.cluster();
+        }
+        catch (Exception ex) { ex.printStackTrace(); }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ibm.node2vec;
+
+/**
+ * The rows of a VectorRows, L2-normalized into one contiguous row-major matrix, so
+ * that a cosine similarity is a plain dot product and a set of queries can be scored
+ * against all the rows like a blocked matrix-matrix product.
+ *
+ * search() goes over the rows tile by tile: a tile of TILE_QUERIES queries is scored
+ * against a tile of TILE_CANDIDATES rows (which stays in cache while the queries go
+ * over it), four queries at a time so that each row is loaded once per four dot
+ * products. Each query keeps its best k in a bounded min-heap (TopK).
+ *
+ * An instance is immutable and can be shared by any number of threads.
+ *
+ * @author dganguly
+ */
+public final class NormalizedRows {
+    static final int TILE_QUERIES = 32;
+    static final int TILE_CANDIDATES = 512;
+
+    final int n, dims;
+    final float[] matrix; // the normalized vectors, row after row
+
+    public NormalizedRows(VectorRows vecs) {
+        n = vecs.rows();
+        dims = vecs.dims();
+        if ((long)n * dims > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(String.format("Too many vectors to normalize in memory: %d x %d", n, dims));
+        matrix = new float[n * dims];
+        float[] row = new float[dims];
+        for (int v = 0; v < n; v++) {
+            vecs.getRow(v, row);
+            normalize(row, matrix, v * dims);
+        }
+    }
+
+    public int rows() { return n; }
+
+    public int dims() { return dims; }
+
+    /** Writes the L2-normalized vec into out[offset, offset+vec.length) (zeros for a zero vector). */
+    public static void normalize(float[] vec, float[] out, int offset) {
+        float sum = 0;
+        for (float x : vec)
+            sum += x * x;
+        float invNorm = sum > 0? (float)(1 / Math.sqrt(sum)) : 0;
+        for (int c = 0; c < vec.length; c++)
+            out[offset + c] = vec[c] * invNorm;
+    }
+
+    /** Copies the normalized row into out[offset, offset+dims). */
+    public void copyRow(int row, float[] out, int offset) {
+        System.arraycopy(matrix, row * dims, out, offset, dims);
+    }
+
+    /** Cosine similarity of rows a and b. */
+    public float sim(int a, int b) {
+        return DotKernel.get().dot(matrix, a * dims, matrix, b * dims, dims);
+    }
+
+    /**
+     * Scores normalized queries against all the rows and keeps the best of each in a heap.
+     * @param q The queries, normalized, row after row.
+     * @param qFrom Position (in rows of q) of the first query.
+     * @param numQueries Number of queries.
+     * @param exclude For each query, a row to leave out of its results (or -1); null for none.
+     * @param heaps The heap of each query (cleared first).
+     */
+    public void search(float[] q, int qFrom, int numQueries, int[] exclude, TopK[] heaps) {
+        for (int i = 0; i < numQueries; i++)
+            heaps[i].clear();
+        for (int cFrom = 0; cFrom < n; cFrom += TILE_CANDIDATES) {
+            int cTo = Math.min(n, cFrom + TILE_CANDIDATES);
+            for (int i = 0; i < numQueries; i += TILE_QUERIES)
+                scoreTile(q, qFrom, i, Math.min(numQueries, i + TILE_QUERIES), cFrom, cTo, exclude, heaps);
+        }
+    }
+
+    void scoreTile(float[] q, int qFrom, int from, int to, int cFrom, int cTo, int[] exclude, TopK[] heaps) {
+        final float[] m = matrix;
+        int i = from;
+        for (; i + 4 <= to; i += 4) {
+            int q0 = (qFrom + i) * dims, q1 = q0 + dims, q2 = q1 + dims, q3 = q2 + dims;
+            int e0 = exclude == null? -1 : exclude[i], e1 = exclude == null? -1 : exclude[i + 1],
+                e2 = exclude == null? -1 : exclude[i + 2], e3 = exclude == null? -1 : exclude[i + 3];
+            for (int c = cFrom; c < cTo; c++) {
+                int base = c * dims;
+                float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+                for (int d = 0; d < dims; d++) {
+                    float x = m[base + d];
+                    s0 += q[q0 + d] * x;
+                    s1 += q[q1 + d] * x;
+                    s2 += q[q2 + d] * x;
+                    s3 += q[q3 + d] * x;
+                }
+                offer(heaps[i], e0, c, s0);
+                offer(heaps[i + 1], e1, c, s1);
+                offer(heaps[i + 2], e2, c, s2);
+                offer(heaps[i + 3], e3, c, s3);
+            }
+        }
+        final DotKernel kernel = DotKernel.get();
+        for (; i < to; i++) {
+            int q0 = (qFrom + i) * dims;
+            int e = exclude == null? -1 : exclude[i];
+            for (int c = cFrom; c < cTo; c++) {
+                offer(heaps[i], e, c, kernel.dot(q, q0, m, c * dims, dims));
+            }
+        }
+    }
+
+    static void offer(TopK heap, int exclude, int c, float sim) {
+        if (c != exclude && sim > heap.threshold())
+            heap.offer(c, sim);
+    }
+}
@@ -0,0 +1,484 @@
+package com.ibm.node2vec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Product quantization (Jegou et al., "Product quantization for nearest neighbor search")
+ * of the L2-normalized vectors, i.e. a compressed store that answers cosine similarity
+ * queries.
+ *
+ * The dimensions are split into m contiguous subspaces and each subspace has a codebook
+ * of (up to) 256 centroids, learned by k-means on a sample of the vectors. A vector is
+ * then stored as m bytes, the nearest centroid in each subspace, instead of 4*dims bytes
+ * (e.g. 8x smaller for m = dims/2, 32x for m = dims/8).
+ *
+ * A query is answered by asymmetric distance computation (ADC): the dot products of the
+ * (exact) query with every centroid are put in an m x 256 table once, and then the score
+ * of a stored vector is the sum of m table look-ups. The similarity of two stored vectors
+ * (sim) uses the precomputed centroid-to-centroid tables instead. The search can re-rank
+ * its best candidates with the exact vectors, when they are available.
+ *
+ * The codes are kept in chunks of at most 2^30 bytes, so that the number of vectors is
+ * not bounded by the size of an array. An instance is immutable once built (the tables
+ * are built lazily, idempotently) and safe for concurrent queries.
+ *
+ * @author dganguly
+ */
+public final class ProductQuantizer {
+    static final int MAGIC = 0x5150324E; // "N2PQ" read as a little-endian int
+    static final int VERSION = 1;
+    static final int HEADER_INTS = 6;
+    static final int MAX_CENTROIDS = 256;
+    static final int CHUNK_BYTES = 1 << 30;
+
+    final int dims, m, ks;
+    final int[] subOffsets; // subspace s is the dimensions [subOffsets[s], subOffsets[s+1])
+    final float[] centroids; // centroid c of subspace s at ks*subOffsets[s] + c*dsub(s)
+    final int n;
+    final int rowsPerChunk;
+    final byte[][] codes;
+    volatile float[] centroidDots; // m x ks x ks dot products of the centroids of each subspace
+
+    ProductQuantizer(int dims, int m, int ks, int[] subOffsets, float[] centroids, int n) {
+        this.dims = dims;
+        this.m = m;
+        this.ks = ks;
+        this.subOffsets = subOffsets;
+        this.centroids = centroids;
+        this.n = n;
+        rowsPerChunk = Math.max(1, CHUNK_BYTES / m);
+        int numChunks = Math.max(1, (n + rowsPerChunk - 1) / rowsPerChunk);
+        codes = new byte[numChunks][];
+        for (int i = 0; i < numChunks; i++)
+            codes[i] = new byte[Math.min(rowsPerChunk, n - i * rowsPerChunk) * m];
+    }
+
+    public int rows() { return n; }
+
+    public int dims() { return dims; }
+
+    public int subspaces() { return m; }
+
+    int dsub(int s) { return subOffsets[s + 1] - subOffsets[s]; }
+
+    /** Bytes of the codes of one vector, against 4*dims for the float vector. */
+    public int bytesPerVector() { return m; }
+
+    /**
+     * Learns the codebooks from a sample of the vectors and encodes all of them.
+     * @param vecs The vectors.
+     * @param m Number of subspaces (bytes per vector), at most dims.
+     * @param sampleSize Number of vectors (drawn at random) to run k-means on.
+     * @param iterations Number of k-means iterations.
+     * @param seed Seed of the sampling and of the initial centroids.
+     */
+    public static ProductQuantizer train(VectorRows vecs, int m, int sampleSize, int iterations, long seed) {
+        int n = vecs.rows(), dims = vecs.dims();
+        if (m < 1 || m > dims)
+            throw new IllegalArgumentException("The number of subspaces must be in [1, " + dims + "]: " + m);
+        sampleSize = Math.max(1, Math.min(sampleSize, n));
+        int ks = Math.min(MAX_CENTROIDS, sampleSize);
+
+        int[] subOffsets = new int[m + 1];
+        for (int s = 0; s <= m; s++)
+            subOffsets[s] = (int)((long)s * dims / m);
+
+        Random rnd = new Random(seed);
+        float[] sample = new float[sampleSize * dims];
+        float[] row = new float[dims];
+        for (int i = 0; i < sampleSize; i++) {
+            vecs.getRow(sampleSize == n? i : rnd.nextInt(n), row);
+            NormalizedRows.normalize(row, sample, i * dims);
+        }
+
+        float[] centroids = new float[ks * dims];
+        final int numSamples = sampleSize;
+        IntStream.range(0, m).parallel().forEach(s ->
+                kmeans(sample, numSamples, dims, subOffsets[s], subOffsets[s + 1] - subOffsets[s],
+                        centroids, ks * subOffsets[s], ks, iterations, new Random(seed + 1 + s)));
+
+        ProductQuantizer pq = new ProductQuantizer(dims, m, ks, subOffsets, centroids, n);
+        pq.encodeAll(vecs);
+        return pq;
+    }
+
+    // Lloyd's k-means on the dimensions [off, off+dsub) of the samples; the ks centroids
+    // (of dsub floats each) go to out from outOffset.
+    static void kmeans(float[] x, int numSamples, int dims, int off, int dsub,
+                       float[] out, int outOffset, int ks, int iterations, Random rnd) {
+        // initial centroids: distinct random samples
+        int[] perm = new int[numSamples];
+        for (int i = 0; i < numSamples; i++)
+            perm[i] = i;
+        for (int c = 0; c < ks; c++) {
+            int j = c + rnd.nextInt(numSamples - c);
+            int t = perm[c]; perm[c] = perm[j]; perm[j] = t;
+            System.arraycopy(x, perm[c] * dims + off, out, outOffset + c * dsub, dsub);
+        }
+
+        int[] assign = new int[numSamples];
+        double[] sums = new double[ks * dsub];
+        int[] counts = new int[ks];
+        for (int iter = 0; iter < iterations; iter++) {
+            for (int i = 0; i < numSamples; i++)
+                assign[i] = nearest(x, i * dims + off, out, outOffset, ks, dsub);
+
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < numSamples; i++) {
+                int c = assign[i];
+                counts[c]++;
+                for (int d = 0; d < dsub; d++)
+                    sums[c * dsub + d] += x[i * dims + off + d];
+            }
+            for (int c = 0; c < ks; c++) {
+                if (counts[c] == 0) {
+                    // re-seed an empty cluster with a random sample
+                    System.arraycopy(x, rnd.nextInt(numSamples) * dims + off, out, outOffset + c * dsub, dsub);
+                    continue;
+                }
+                for (int d = 0; d < dsub; d++)
+                    out[outOffset + c * dsub + d] = (float)(sums[c * dsub + d] / counts[c]);
+            }
+        }
+    }
+
+    // The centroid (of ks, from cOffset) nearest to the dsub floats of v at vOffset, by L2
+    static int nearest(float[] v, int vOffset, float[] cents, int cOffset, int ks, int dsub) {
+        int best = 0;
+        float bestDist = Float.MAX_VALUE;
+        for (int c = 0; c < ks; c++) {
+            int base = cOffset + c * dsub;
+            float dist = 0;
+            for (int d = 0; d < dsub; d++) {
+                float diff = v[vOffset + d] - cents[base + d];
+                dist += diff * diff;
+            }
+            if (dist < bestDist) {
+                bestDist = dist;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    void encodeAll(VectorRows vecs) {
+        final int block = 4096;
+        int numBlocks = (n + block - 1) / block;
+        IntStream.range(0, numBlocks).parallel().forEach(b -> {
+            float[] row = new float[dims];
+            float[] normalized = new float[dims];
+            for (int v = b * block; v < Math.min(n, (b + 1) * block); v++) {
+                vecs.getRow(v, row);
+                NormalizedRows.normalize(row, normalized, 0);
+                encode(normalized, codes[v / rowsPerChunk], (v % rowsPerChunk) * m);
+            }
+        });
+    }
+
+    /** Writes the m byte codes of a normalized vector into out from offset. */
+    public void encode(float[] normalized, byte[] out, int offset) {
+        for (int s = 0; s < m; s++)
+            out[offset + s] = (byte)nearest(normalized, subOffsets[s], centroids, ks * subOffsets[s], ks, dsub(s));
+    }
+
+    int code(int row, int s) {
+        return codes[row / rowsPerChunk][(row % rowsPerChunk) * m + s] & 0xFF;
+    }
+
+    /** Writes the approximation (from the codebooks) of a stored vector into out. */
+    public void decode(int row, float[] out) {
+        for (int s = 0; s < m; s++) {
+            int dsub = dsub(s);
+            System.arraycopy(centroids, ks * subOffsets[s] + code(row, s) * dsub, out, subOffsets[s], dsub);
+        }
+    }
+
+    /** The ADC table of a query: the dot products of its subvectors with every centroid. */
+    public float[] distanceTable(float[] query) {
+        float[] normalized = new float[dims];
+        NormalizedRows.normalize(query, normalized, 0);
+        float[] table = new float[m * ks];
+        for (int s = 0; s < m; s++) {
+            int off = subOffsets[s], dsub = dsub(s);
+            for (int c = 0; c < ks; c++) {
+                int base = ks * off + c * dsub;
+                float dot = 0;
+                for (int d = 0; d < dsub; d++)
+                    dot += normalized[off + d] * centroids[base + d];
+                table[s * ks + c] = dot;
+            }
+        }
+        return table;
+    }
+
+    /** Approximate cosine similarity of a stored vector with the query of an ADC table. */
+    public float score(float[] table, int row) {
+        byte[] chunk = codes[row / rowsPerChunk];
+        int base = (row % rowsPerChunk) * m;
+        float sum = 0;
+        for (int s = 0; s < m; s++)
+            sum += table[s * ks + (chunk[base + s] & 0xFF)];
+        return sum;
+    }
+
+    /** Approximate cosine similarity of two stored vectors (symmetric, from the codes alone). */
+    public float sim(int a, int b) {
+        float[] dots = centroidDots();
+        float sum = 0;
+        for (int s = 0; s < m; s++)
+            sum += dots[(s * ks + code(a, s)) * ks + code(b, s)];
+        return sum;
+    }
+
+    float[] centroidDots() {
+        float[] dots = centroidDots;
+        if (dots != null)
+            return dots;
+        dots = new float[m * ks * ks];
+        for (int s = 0; s < m; s++) {
+            int off = ks * subOffsets[s], dsub = dsub(s);
+            for (int a = 0; a < ks; a++) {
+                for (int b = 0; b < ks; b++) {
+                    float dot = 0;
+                    for (int d = 0; d < dsub; d++)
+                        dot += centroids[off + a * dsub + d] * centroids[off + b * dsub + d];
+                    dots[(s * ks + a) * ks + b] = dot;
+                }
+            }
+        }
+        centroidDots = dots;
+        return dots;
+    }
+
+    /**
+     * Top-k query by ADC, optionally re-ranked with the exact vectors.
+     * @param query The query vector (need not be normalized).
+     * @param k Number of results.
+     * @param exclude A row to leave out (e.g. the query's own), or -1.
+     * @param rerank If positive (and vecs is given), the best rerank*k rows by ADC are
+     * re-scored with the exact vectors and the best k of them are returned.
+     * @param vecs The exact vectors, or null.
+     * @param rows Receives the rows of the results, most similar first.
+     * @param sims Receives their similarities (exact ones if re-ranked).
+     * @return The number of results.
+     */
+    public int search(float[] query, int k, int exclude, int rerank, VectorRows vecs, int[] rows, float[] sims) {
+        boolean exact = rerank > 0 && vecs != null;
+        float[] table = distanceTable(query);
+        TopK candidates = new TopK(Math.min(n, exact? k * rerank : k));
+        for (int row = 0; row < n; row++) {
+            if (row == exclude)
+                continue;
+            float score = score(table, row);
+            if (score > candidates.threshold())
+                candidates.offer(row, score);
+        }
+
+        if (exact) {
+            float qNorm = (float)Math.sqrt(dot(query, query));
+            TopK topK = new TopK(Math.min(k, candidates.size()));
+            for (int i = 0; i < candidates.size(); i++) {
+                int row = candidates.id(i);
+                topK.offer(row, vecs.dot(row, query) / (qNorm * (float)Math.sqrt(vecs.dot(row, row))));
+            }
+            candidates = topK;
+        }
+        candidates.sort();
+        int count = Math.min(k, candidates.size());
+        for (int i = 0; i < count; i++) {
+            rows[i] = candidates.id(i);
+            sims[i] = candidates.score(i);
+        }
+        return count;
+    }
+
+    static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++)
+            sum += a[i] * b[i];
+        return sum;
+    }
+
+    /**
+     * Prints the recall@k of the search (by ADC alone, and re-ranked) against the exact
+     * search, over random query rows, with the mean latencies and the compression. With
+     * rerank = wordvecs.pq.rerank (10 by default), the re-ranked figure is the recall of
+     * WordVecs.getQuantizedNearestNeighbors.
+     * @return The recall@k without re-ranking.
+     */
+    public double reportRecall(VectorRows vecs, int numQueries, int k, int rerank) {
+        Random rnd = new Random(1234);
+        float[] query = new float[dims];
+        int[] exactRows = new int[k], rows = new int[k];
+        float[] exactSims = new float[k], sims = new float[k];
+        double recall = 0, rerankedRecall = 0;
+        long exactNanos = 0, adcNanos = 0, rerankNanos = 0;
+
+        for (int i = 0; i < numQueries; i++) {
+            int q = rnd.nextInt(n);
+            vecs.getRow(q, query);
+            long start = System.nanoTime();
+            int count = exactSearch(vecs, query, k, q, exactRows, exactSims);
+            exactNanos += System.nanoTime() - start;
+            int[] truth = Arrays.copyOf(exactRows, count);
+            Arrays.sort(truth);
+
+            start = System.nanoTime();
+            int found = search(query, k, q, 0, null, rows, sims);
+            adcNanos += System.nanoTime() - start;
+            recall += hits(truth, rows, found) / (double)Math.max(1, count);
+
+            start = System.nanoTime();
+            found = search(query, k, q, rerank, vecs, rows, sims);
+            rerankNanos += System.nanoTime() - start;
+            rerankedRecall += hits(truth, rows, found) / (double)Math.max(1, count);
+        }
+        recall /= numQueries;
+        rerankedRecall /= numQueries;
+        System.out.println(String.format("PQ with %d subspaces: %d bytes/vector instead of %d (%.1fx smaller)",
+                m, m, 4 * dims, 4.0 * dims / m));
+        System.out.println(String.format("recall@%d = %.4f (ADC, %.3fms/query), %.4f (re-ranking the best %d candidates, " +
+                "rerank=%d, %.3fms/query); exact search %.3fms/query", k, recall, adcNanos / 1e6 / numQueries,
+                rerankedRecall, Math.min(n, k * rerank), rerank, rerankNanos / 1e6 / numQueries, exactNanos / 1e6 / numQueries));
+        return recall;
+    }
+
+    static int exactSearch(VectorRows vecs, float[] query, int k, int exclude, int[] rows, float[] sims) {
+        float qNorm = (float)Math.sqrt(dot(query, query));
+        TopK topK = new TopK(Math.min(k, vecs.rows()));
+        for (int row = 0; row < vecs.rows(); row++) {
+            if (row != exclude)
+                topK.offer(row, vecs.dot(row, query) / (qNorm * (float)Math.sqrt(vecs.dot(row, row))));
+        }
+        topK.sort();
+        for (int i = 0; i < topK.size(); i++) {
+            rows[i] = topK.id(i);
+            sims[i] = topK.score(i);
+        }
+        return topK.size();
+    }
+
+    static int hits(int[] sortedTruth, int[] rows, int count) {
+        int hits = 0;
+        for (int i = 0; i < count; i++) {
+            if (Arrays.binarySearch(sortedTruth, rows[i]) >= 0)
+                hits++;
+        }
+        return hits;
+    }
+
+    /**
+     * Writes the quantizer to a file: a header of 6 little-endian ints (magic, version,
+     * dims, m, #centroids, #rows), the m+1 subspace offsets, the centroids (floats)
+     * and the codes (m bytes per row, row after row).
+     */
+    public void save(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            ByteBuffer head = ByteBuffer.allocate(4 * (HEADER_INTS + m + 1 + centroids.length))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            head.putInt(MAGIC).putInt(VERSION).putInt(dims).putInt(m).putInt(ks).putInt(n);
+            for (int x : subOffsets)
+                head.putInt(x);
+            for (float x : centroids)
+                head.putFloat(x);
+            head.flip();
+            while (head.hasRemaining())
+                channel.write(head);
+            for (byte[] chunk : codes) {
+                ByteBuffer buff = ByteBuffer.wrap(chunk);
+                while (buff.hasRemaining())
+                    channel.write(buff);
+            }
+        }
+    }
+
+    /** Reads a quantizer written by save. */
+    public static ProductQuantizer load(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(4 * HEADER_INTS).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            if (header.getInt() != MAGIC)
+                throw new IOException(file + " is not a product quantizer file");
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported product quantizer file version " + version);
+            int dims = header.getInt(), m = header.getInt(), ks = header.getInt(), n = header.getInt();
+
+            ByteBuffer tables = ByteBuffer.allocate(4 * (m + 1 + ks * dims)).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, tables);
+            int[] subOffsets = new int[m + 1];
+            for (int s = 0; s <= m; s++)
+                subOffsets[s] = tables.getInt();
+            float[] centroids = new float[ks * dims];
+            tables.asFloatBuffer().get(centroids);
+
+            ProductQuantizer pq = new ProductQuantizer(dims, m, ks, subOffsets, centroids, n);
+            for (byte[] chunk : pq.codes)
+                readFully(channel, ByteBuffer.wrap(chunk));
+            return pq;
+        }
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buff) throws IOException {
+        while (buff.hasRemaining()) {
+            if (channel.read(buff) < 0)
+                throw new IOException("Unexpected end of file");
+        }
+        buff.flip();
+    }
+
+    /**
+     * Trains a quantizer on a vector file (or loads it from the .pq file next to it)
+     * and reports its recall@k against the exact search.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("usage: java ProductQuantizer <vector file> [#subspaces (dims/4)] " +
+                    "[k (10)] [#queries (200)] [re-rank factor (10)]");
+            return;
+        }
+        try {
+            File vecFile = new File(args[0]);
+            WordVecs wvecs = new WordVecs();
+            if (BinaryVecFile.isBinary(vecFile))
+                wvecs.mapBinaryFile(vecFile);
+            else
+                wvecs.loadFromFile(vecFile);
+            VectorRows vecs = wvecs.rows();
+
+            int m = args.length > 1? Integer.parseInt(args[1]) : Math.max(1, vecs.dims() / 4);
+            int k = args.length > 2? Integer.parseInt(args[2]) : 10;
+            int numQueries = args.length > 3? Integer.parseInt(args[3]) : 200;
+            int rerank = args.length > 4? Integer.parseInt(args[4]) : 10;
+
+            File pqFile = new File(args[0] + ".pq");
+            ProductQuantizer pq;
+            if (pqFile.exists()) {
+                pq = load(pqFile);
+            }
+            else {
+                long start = System.currentTimeMillis();
+                pq = train(vecs, m, 100000, 25, 1234);
+                System.out.println(String.format("Trained and encoded %d vectors in %.1fs",
+                        pq.rows(), (System.currentTimeMillis() - start) / 1000.0));
+                pq.save(pqFile);
+            }
+            pq.reportRecall(vecs, numQueries, k, rerank);
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.ibm.node2vec;
+
+/**
+ * The plain loops of word2vec.c, one multiply-add at a time (see DotKernel).
+ *
+ * @author dganguly
+ */
+public final class ScalarKernel implements DotKernel {
+    public static final ScalarKernel INSTANCE = new ScalarKernel();
+
+    private ScalarKernel() {}
+
+    @Override
+    public float dot(float[] a, int aOff, float[] b, int bOff, int n) {
+        float sum = 0;
+        for (int i = 0; i < n; i++)
+            sum += a[aOff + i] * b[bOff + i];
+        return sum;
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int n) {
+        for (int i = 0; i < n; i++)
+            y[yOff + i] += alpha * x[xOff + i];
+    }
+
+    @Override
+    public float squaredDistance(float[] a, int aOff, float[] b, int bOff, int n) {
+        float sum = 0;
+        for (int i = 0; i < n; i++) {
+            float diff = a[aOff + i] - b[bOff + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() { return "scalar"; }
+}
@@ -0,0 +1,201 @@
+package com.ibm.node2vec;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Mini-batch k-means (Sculley, "Web-scale k-means clustering") over the L2-normalized
+ * vectors of a VectorStream, for embeddings that don't fit in memory: only the
+ * centroids, a sample and one batch are held at a time.
+ *
+ * A first pass draws a uniform sample (reservoir sampling) of the vectors, which
+ * KMeans clusters into the initial centroids. Then each epoch goes over the vectors in
+ * batches: the points of a batch are assigned to their nearest centroids in parallel,
+ * and then each centroid is moved towards each of its points with a learning rate of
+ * 1 / (the number of points it has been given so far, starting with its cluster in the
+ * sample), so that it stays the mean of all its points. A final pass (assign) gives
+ * each vector its cluster, in the order of the stream.
+ *
+ * @author dganguly
+ */
+public class StreamingKMeans {
+    static final int CHUNK = 1024; // points of a batch per parallel task
+
+    final int k;
+    final int batchSize;
+    final int epochs;
+    final int sampleSize;
+    final long seed;
+    final int numThreads;
+    boolean verbose;
+
+    int dims;
+    float[] centroids;
+    long[] counts; // points given to each centroid so far
+
+    /**
+     * @param k Number of clusters.
+     * @param batchSize Number of points per batch.
+     * @param epochs Number of passes over the vectors (after the one that samples them).
+     * @param sampleSize Number of points sampled to seed the centroids.
+     * @param seed Seed of the random choices.
+     * @param numThreads Number of threads.
+     */
+    public StreamingKMeans(int k, int batchSize, int epochs, int sampleSize, long seed, int numThreads) {
+        this.k = k;
+        this.batchSize = Math.max(1, batchSize);
+        this.epochs = epochs;
+        this.sampleSize = Math.max(k, sampleSize);
+        this.seed = seed;
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /** Prints the progress of the epochs. */
+    public StreamingKMeans setVerbose(boolean verbose) {
+        this.verbose = verbose;
+        return this;
+    }
+
+    /** The centroids, row after row (numClusters() x dims). */
+    public float[] centroids() { return centroids; }
+
+    /** The number of clusters (less than k when there are fewer points). */
+    public int numClusters() { return centroids.length / Math.max(1, dims); }
+
+    /** Receives the cluster of each vector of the final pass. */
+    public interface Labels {
+        void label(String id, int cluster) throws IOException;
+    }
+
+    /** Computes the centroids of the vectors of the stream. */
+    public StreamingKMeans fit(VectorStream vectors) throws IOException {
+        dims = vectors.dims();
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            long t0 = System.currentTimeMillis();
+            seedCentroids(vectors);
+            if (verbose)
+                System.out.println(String.format("mini-batch k-means: %d centroids seeded in %.2fs", numClusters(), (System.currentTimeMillis() - t0) / 1000.0));
+
+            float[] batch = new float[batchSize * dims];
+            int[] assignments = new int[batchSize];
+            float[] dist = new float[batchSize];
+            for (int epoch = 1; epoch <= epochs; epoch++) {
+                vectors.rewind();
+                long n = 0;
+                double inertia = 0;
+                int size;
+                while ((size = vectors.read(batch, null, batchSize)) > 0) {
+                    normalize(batch, size);
+                    assign(pool, batch, size, assignments, dist);
+                    for (int i = 0; i < size; i++) {
+                        int c = assignments[i];
+                        float eta = 1f / ++counts[c];
+                        for (int d = 0; d < dims; d++)
+                            centroids[c * dims + d] += eta * (batch[i * dims + d] - centroids[c * dims + d]);
+                        inertia += dist[i];
+                    }
+                    n += size;
+                }
+                if (verbose)
+                    System.out.println(String.format("mini-batch k-means: epoch %d, %d points in %.2fs, inertia %.4f (before the updates)",
+                            epoch, n, (System.currentTimeMillis() - t0) / 1000.0, inertia));
+            }
+            return this;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Goes over the vectors of the stream (from the start) and gives each of them, in
+     * order, its nearest centroid.
+     * @return The number of vectors.
+     */
+    public long assign(VectorStream vectors, Labels out) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            vectors.rewind();
+            float[] batch = new float[batchSize * dims];
+            String[] ids = new String[batchSize];
+            int[] assignments = new int[batchSize];
+            float[] dist = new float[batchSize];
+            long n = 0;
+            int size;
+            while ((size = vectors.read(batch, ids, batchSize)) > 0) {
+                normalize(batch, size);
+                assign(pool, batch, size, assignments, dist);
+                for (int i = 0; i < size; i++)
+                    out.label(ids[i], assignments[i]);
+                n += size;
+            }
+            return n;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    // Clusters a uniform sample of the vectors with KMeans, and starts the count of
+    // each centroid with the size of its cluster in the sample
+    void seedCentroids(VectorStream vectors) throws IOException {
+        Random rnd = new Random(seed);
+        float[] sample = new float[sampleSize * dims];
+        float[] batch = new float[batchSize * dims];
+        long seen = 0;
+        int size;
+        vectors.rewind();
+        while ((size = vectors.read(batch, null, batchSize)) > 0) {
+            for (int i = 0; i < size; i++, seen++) {
+                // reservoir sampling: the point replaces a random one with probability sampleSize/seen
+                long slot = seen < sampleSize? seen : (long)(rnd.nextDouble() * (seen + 1));
+                if (slot < sampleSize)
+                    System.arraycopy(batch, i * dims, sample, (int)slot * dims, dims);
+            }
+        }
+        if (seen == 0)
+            throw new IOException("No vectors to cluster");
+        int n = (int)Math.min(seen, sampleSize);
+        normalize(sample, n);
+
+        KMeans kmeans = new KMeans(k, 100, 0.0001, seed, numThreads);
+        kmeans.fit(sample, n, dims);
+        centroids = kmeans.centroids();
+        counts = new long[kmeans.numClusters()];
+        for (int c : kmeans.assignments())
+            counts[c]++;
+    }
+
+    void normalize(float[] points, int n) {
+        float[] row = new float[dims];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(points, i * dims, row, 0, dims);
+            NormalizedRows.normalize(row, points, i * dims);
+        }
+    }
+
+    // The nearest centroid of each point of the batch (and the squared distance to it)
+    void assign(ForkJoinPool pool, float[] batch, int size, int[] assignments, float[] dist) {
+        DotKernel kernel = DotKernel.get();
+        int numClusters = numClusters();
+        int numChunks = (size + CHUNK - 1) / CHUNK;
+        pool.submit(() -> IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            for (int i = chunk * CHUNK, end = Math.min(size, i + CHUNK); i < end; i++) {
+                int best = 0;
+                float min = Float.MAX_VALUE;
+                for (int c = 0; c < numClusters; c++) {
+                    float d = kernel.squaredDistance(batch, i * dims, centroids, c * dims, dims);
+                    if (d < min) {
+                        min = d;
+                        best = c;
+                    }
+                }
+                assignments[i] = best;
+                dist[i] = min;
+            }
+        })).join();
+    }
+}
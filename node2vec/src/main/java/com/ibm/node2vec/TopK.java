@@ -0,0 +1,89 @@
+package com.ibm.node2vec;
+
+/**
+ * Keeps the k highest scoring (id, score) pairs out of a stream of offers, in a
+ * bounded min-heap over two primitive arrays (the root is the lowest score kept,
+ * i.e. the one to beat). Ties are broken towards the smaller id, so that the
+ * result doesn't depend on the order of the offers.
+ *
+ * @author dganguly
+ */
+public final class TopK {
+    final int[] ids;
+    final float[] scores;
+    int size;
+
+    public TopK(int k) {
+        ids = new int[k];
+        scores = new float[k];
+    }
+
+    public int size() { return size; }
+
+    public void clear() { size = 0; }
+
+    /** The lowest score kept so far once k pairs have been offered, else -infinity. */
+    public float threshold() {
+        return size < ids.length? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    // whether (ia, sa) ranks below (ib, sb)
+    static boolean below(int ia, float sa, int ib, float sb) {
+        return sa < sb || (sa == sb && ia > ib);
+    }
+
+    public void offer(int id, float score) {
+        if (size < ids.length) {
+            // sift up
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!below(id, score, ids[parent], scores[parent]))
+                    break;
+                ids[i] = ids[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            scores[i] = score;
+        }
+        else if (size > 0 && below(ids[0], scores[0], id, score)) {
+            siftDown(0, id, score, size);
+        }
+    }
+
+    void siftDown(int i, int id, float score, int n) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n)
+                break;
+            if (child + 1 < n && below(ids[child + 1], scores[child + 1], ids[child], scores[child]))
+                child++;
+            if (!below(ids[child], scores[child], id, score))
+                break;
+            ids[i] = ids[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        ids[i] = id;
+        scores[i] = score;
+    }
+
+    /**
+     * Sorts the pairs kept by descending score (a heap sort in place), after which
+     * id(i) and score(i) give the i-th best. The heap is consumed: clear() before reuse.
+     */
+    public void sort() {
+        for (int n = size - 1; n > 0; n--) {
+            int id = ids[n];
+            float score = scores[n];
+            ids[n] = ids[0];
+            scores[n] = scores[0];
+            siftDown(0, id, score, n);
+        }
+    }
+
+    public int id(int i) { return ids[i]; }
+
+    public float score(int i) { return scores[i]; }
+}
@@ -0,0 +1,61 @@
+package com.ibm.node2vec;
+
+/**
+ * Reductions unrolled by 4, with four independent accumulators so that consecutive
+ * multiply-adds don't wait for each other (see DotKernel). The JIT can't do this by
+ * itself since it would change the order of the float additions.
+ *
+ * @author dganguly
+ */
+public final class UnrolledKernel implements DotKernel {
+    public static final UnrolledKernel INSTANCE = new UnrolledKernel();
+
+    private UnrolledKernel() {}
+
+    @Override
+    public float dot(float[] a, int aOff, float[] b, int bOff, int n) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 4 <= n; i += 4) {
+            s0 += a[aOff + i] * b[bOff + i];
+            s1 += a[aOff + i + 1] * b[bOff + i + 1];
+            s2 += a[aOff + i + 2] * b[bOff + i + 2];
+            s3 += a[aOff + i + 3] * b[bOff + i + 3];
+        }
+        for (; i < n; i++)
+            s0 += a[aOff + i] * b[bOff + i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int n) {
+        // no reduction here: the plain loop is left to the JIT, which unrolls and
+        // vectorizes it by itself (and less well when it's unrolled by hand)
+        for (int i = 0; i < n; i++)
+            y[yOff + i] += alpha * x[xOff + i];
+    }
+
+    @Override
+    public float squaredDistance(float[] a, int aOff, float[] b, int bOff, int n) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 4 <= n; i += 4) {
+            float d0 = a[aOff + i] - b[bOff + i];
+            float d1 = a[aOff + i + 1] - b[bOff + i + 1];
+            float d2 = a[aOff + i + 2] - b[bOff + i + 2];
+            float d3 = a[aOff + i + 3] - b[bOff + i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; i < n; i++) {
+            float d = a[aOff + i] - b[bOff + i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public String name() { return "unrolled"; }
+}
@@ -0,0 +1,26 @@
+package com.ibm.node2vec;
+
+/**
+ * Read access to a set of vectors addressed by row number (0 to rows()-1), whatever
+ * holds them: WordVec objects on the heap or a memory-mapped BinaryVecFile.
+ * Implementations are read-only and safe for concurrent readers.
+ *
+ * @author dganguly
+ */
+public interface VectorRows {
+    int rows();
+
+    int dims();
+
+    /** The id (node name) of a row. */
+    String id(int row);
+
+    /** Dot product of the vector at row with q[0, dims). */
+    float dot(int row, float[] q);
+
+    /** Dot product of the vectors at rows a and b. */
+    float dot(int a, int b);
+
+    /** Copies the vector at row into out[0, dims). */
+    void getRow(int row, float[] out);
+}
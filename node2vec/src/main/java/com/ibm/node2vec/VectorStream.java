@@ -0,0 +1,154 @@
+package com.ibm.node2vec;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The vectors of an embedding file (in either format written by Node2Vec), read in
+ * order a chunk at a time, so that a pass over them needs memory for one chunk only.
+ * A text file is parsed line by line; a binary file (see BinaryVecFile) is mapped and
+ * its rows copied out of the page cache. rewind() starts another pass.
+ *
+ * @author dganguly
+ */
+public abstract class VectorStream implements Closeable {
+
+    /** Opens a file in either format (the binary format is recognized by its magic number). */
+    public static VectorStream open(File file) throws IOException {
+        return BinaryVecFile.isBinary(file)? new Binary(BinaryVecFile.map(file)) : new Text(file);
+    }
+
+    /** The number of components of the vectors. */
+    public abstract int dims();
+
+    /** Goes back to the first vector. */
+    public abstract void rewind() throws IOException;
+
+    /**
+     * Reads the next vectors (at most max) into buff, row after row, and their ids into
+     * ids (if not null).
+     * @return The number of vectors read, 0 at the end of the file.
+     */
+    public abstract int read(float[] buff, String[] ids, int max) throws IOException;
+
+    static final class Binary extends VectorStream {
+        final BinaryVecFile vecFile;
+        final float[] row;
+        int next;
+
+        Binary(BinaryVecFile vecFile) {
+            this.vecFile = vecFile;
+            this.row = new float[vecFile.dims()];
+        }
+
+        @Override
+        public int dims() { return vecFile.dims(); }
+
+        @Override
+        public void rewind() { next = 0; }
+
+        @Override
+        public int read(float[] buff, String[] ids, int max) {
+            int dims = vecFile.dims();
+            int count = Math.min(max, vecFile.rows() - next);
+            for (int i = 0; i < count; i++, next++) {
+                vecFile.getRow(next, row);
+                System.arraycopy(row, 0, buff, i * dims, dims);
+                if (ids != null)
+                    ids[i] = vecFile.id(next);
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {
+            // the mapping goes away with the BinaryVecFile
+        }
+    }
+
+    static final class Text extends VectorStream {
+        final File file;
+        final int dims;
+        BufferedReader reader;
+
+        Text(File file) throws IOException {
+            this.file = file;
+            rewind();
+            // the dimension is that of the first vector
+            String line = reader.readLine();
+            dims = line == null? 0 : countTokens(line) - 1;
+            rewind();
+        }
+
+        @Override
+        public int dims() { return dims; }
+
+        @Override
+        public void rewind() throws IOException {
+            if (reader != null)
+                reader.close();
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        @Override
+        public int read(float[] buff, String[] ids, int max) throws IOException {
+            int count = 0;
+            String line;
+            while (count < max && (line = reader.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+                String id = parse(line, buff, count * dims);
+                if (ids != null)
+                    ids[count] = id;
+                count++;
+            }
+            return count;
+        }
+
+        // Parses a line "id x1 ... xdims" into out[offset, offset+dims) and returns the id
+        String parse(String line, float[] out, int offset) throws IOException {
+            int len = line.length(), pos = 0, c = -1;
+            String id = null;
+            while (true) {
+                while (pos < len && Character.isWhitespace(line.charAt(pos)))
+                    pos++;
+                if (pos == len)
+                    break;
+                int end = pos;
+                while (end < len && !Character.isWhitespace(line.charAt(end)))
+                    end++;
+                if (c < 0)
+                    id = line.substring(pos, end);
+                else if (c < dims)
+                    out[offset + c] = Float.parseFloat(line.substring(pos, end));
+                c++;
+                pos = end;
+            }
+            if (c != dims)
+                throw new IOException(String.format("%s: %d components instead of %d for %s", file, c, dims, id));
+            return id;
+        }
+
+        static int countTokens(String line) {
+            int count = 0;
+            boolean inToken = false;
+            for (int i = 0; i < line.length(); i++) {
+                boolean space = Character.isWhitespace(line.charAt(i));
+                if (!space && !inToken)
+                    count++;
+                inToken = !space;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.ibm.node2vec;
+
+// Refer to the node2vec paper --- consider moving from t,v and then to x
+enum VisitStatus {
+    CASE_P,
+    CASE_ONE,
+    CASE_Q
+}
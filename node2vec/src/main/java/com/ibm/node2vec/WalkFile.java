@@ -0,0 +1,282 @@
+package com.ibm.node2vec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A corpus of random walks, written once (e.g. by a first run over a graph with some
+ * p and q) and replayed by later runs, so that a sweep of the training parameters
+ * (dimensions, learning rate...) over the same walks doesn't pay for the sampling again.
+ * The numbers of the header are little-endian:
+ * <pre>
+ *  header: magic "N2WK" (int), version (int), #nodes (int), window (int),
+ *          fingerprint of the vocab (long), #epochs (int), p (float), q (float), flags (int)
+ *  epochs: for each epoch, the blocks of walks of the epoch, then an empty block
+ *  block:  its length in bytes (varint), #walks (varint), then for each walk the source
+ *          node (zig-zag varint of the difference with the previous source of the block,
+ *          0 for the first), the length of the walk (varint) and its nodes (zig-zag
+ *          varints of the difference with the previous node, the source for the first)
+ * </pre>
+ * Nodes are vocab ids, hence the fingerprint of the vocab (its words in order), which
+ * a replay checks against the vocab of the graph it loaded. Consecutive nodes of a walk
+ * and consecutive sources are often close ids (the vocab is sorted by degree), so most
+ * of them take one or two bytes.
+ *
+ * The reader maps the file in segments (of SEGMENT_SIZE bytes, or one block if larger, starting at a
+ * block) and hands out the blocks in order to any number of threads, which decode them
+ * in parallel. Replaying more epochs than were written starts over from the first one.
+ *
+ * @author dganguly
+ */
+public final class WalkFile {
+    static final int MAGIC = 0x4B57324E; // "N2WK" read as a little-endian int
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+    static final int EPOCHS_OFFSET = 24;
+    static final int FLAG_PQSAMPLING = 1;
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    private WalkFile() {}
+
+    /** The fingerprint of a vocab, i.e. of its words in order. */
+    static long fingerprint(Node2Vec.vocab_node[] vocab, int vocab_size) {
+        long h = vocab_size;
+        for (int a = 0; a < vocab_size; a++)
+            h = h * 1000003 + vocab[a].word.hashCode();
+        return h;
+    }
+
+    static int putVarint(byte[] buff, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            buff[pos++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buff[pos++] = (byte)value;
+        return pos;
+    }
+
+    static int getVarint(ByteBuffer buff) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buff.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    static int zigzag(int value) { return (value << 1) ^ (value >> 31); }
+
+    static int unzigzag(int value) { return (value >>> 1) ^ -(value & 1); }
+
+    /**
+     * Writes the walks. Blocks can be written by any number of threads; they are
+     * encoded by the calling thread and appended under a lock.
+     */
+    public static class Writer implements Closeable {
+        final File file;
+        final OutputStream out;
+        final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[1 << 12]);
+        int epochs;
+        long bytes;
+
+        public Writer(File file, Node2Vec n2v) throws IOException {
+            this.file = file;
+            this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n2v.vocab_size).putInt(n2v.window)
+                    .putLong(fingerprint(n2v.vocab, n2v.vocab_size)).putInt(0)
+                    .putFloat(n2v.p1).putFloat(n2v.q1).putInt(n2v.pqsampling? FLAG_PQSAMPLING : 0);
+            out.write(header.array());
+            bytes = HEADER_SIZE;
+        }
+
+        /** Appends the walks of a block to the current epoch. */
+        public void write(WalkPipeline.WalkBlock block) throws IOException {
+            int numNodes = block.offsets[block.size];
+            int bound = 10 + 10 * block.size + 5 * numNodes;
+            byte[] buff = scratch.get();
+            if (buff.length < bound + 5) {
+                buff = new byte[bound + 5];
+                scratch.set(buff);
+            }
+
+            // encode after 5 bytes of room for the length, then move the length in front
+            int pos = putVarint(buff, 5, block.size);
+            int prevSource = 0;
+            for (int i = 0; i < block.size; i++) {
+                int source = block.sources[i], from = block.offsets[i], to = block.offsets[i + 1];
+                pos = putVarint(buff, pos, zigzag(source - prevSource));
+                pos = putVarint(buff, pos, to - from);
+                int prev = source;
+                for (int j = from; j < to; j++) {
+                    pos = putVarint(buff, pos, zigzag(block.nodes[j] - prev));
+                    prev = block.nodes[j];
+                }
+                prevSource = source;
+            }
+            int len = pos - 5;
+            byte[] lenBytes = new byte[5];
+            int lenSize = putVarint(lenBytes, 0, len);
+            int start = 5 - lenSize;
+            System.arraycopy(lenBytes, 0, buff, start, lenSize);
+
+            synchronized (this) {
+                out.write(buff, start, pos - start);
+                bytes += pos - start;
+            }
+        }
+
+        /** Ends the current epoch. */
+        public synchronized void endEpoch() throws IOException {
+            out.write(0);
+            bytes++;
+            epochs++;
+        }
+
+        /** Bytes written so far. */
+        public synchronized long size() { return bytes; }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(epochs);
+                raf.seek(EPOCHS_OFFSET);
+                raf.write(count.array());
+            }
+        }
+    }
+
+    /** Reads the walks of a file, block by block, for any number of threads. */
+    public static class Reader implements Closeable {
+        final RandomAccessFile raf;
+        final FileChannel channel;
+        final long size;
+        final int numNodes, window, epochs;
+        final float p, q;
+        final boolean pqsampling;
+        MappedByteBuffer segment;
+        long segmentStart;
+        long pos = HEADER_SIZE; // start of the next block
+        boolean epochDone = true;
+        int epoch; // epochs started so far
+
+        /**
+         * Opens a walk file to replay it over the vocab of n2v.
+         * @throws IOException If the file is not a walk file of this vocab.
+         */
+        public Reader(File file, Node2Vec n2v) throws IOException {
+            raf = new RandomAccessFile(file, "r");
+            channel = raf.getChannel();
+            try {
+                size = channel.size();
+                if (size < HEADER_SIZE)
+                    throw new IOException(file + " is not a walk file");
+                ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                if (header.getInt() != MAGIC)
+                    throw new IOException(file + " is not a walk file");
+                int version = header.getInt();
+                if (version != VERSION)
+                    throw new IOException("Unsupported walk file version " + version);
+                numNodes = header.getInt();
+                window = header.getInt();
+                long fingerprint = header.getLong();
+                epochs = header.getInt();
+                p = header.getFloat();
+                q = header.getFloat();
+                pqsampling = (header.getInt() & FLAG_PQSAMPLING) != 0;
+
+                if (numNodes != n2v.vocab_size || fingerprint != fingerprint(n2v.vocab, n2v.vocab_size))
+                    throw new IOException(String.format("%s was written for another graph (or min-count): %d nodes in the file, %d loaded",
+                            file, numNodes, n2v.vocab_size));
+                if (epochs == 0)
+                    throw new IOException(file + " has no complete epoch");
+            }
+            catch (IOException ex) {
+                raf.close();
+                throw ex;
+            }
+        }
+
+        /** Starts the next epoch (over again from the first one after the last). */
+        public synchronized void startEpoch() {
+            if (epoch % epochs == 0)
+                pos = HEADER_SIZE;
+            epoch++;
+            epochDone = false;
+        }
+
+        /**
+         * The next block of the current epoch, as a buffer of its encoded walks,
+         * or null at the end of the epoch.
+         */
+        public synchronized ByteBuffer nextBlock() throws IOException {
+            if (epochDone)
+                return null;
+            ByteBuffer view = map(pos, 5);
+            int len = getVarint(view);
+            int lenSize = view.position() - (int)(pos - segmentStart);
+            pos += lenSize;
+            if (len == 0) {
+                epochDone = true;
+                return null;
+            }
+            if (pos + len > size)
+                throw new IOException("Truncated walk file");
+            view = map(pos, len);
+            view.limit(view.position() + len);
+            pos += len;
+            return view.slice();
+        }
+
+        // A view of the mapping positioned at the file offset from, which is remapped
+        // if it doesn't hold the next need bytes
+        ByteBuffer map(long from, int need) throws IOException {
+            long end = Math.min(size, from + need);
+            if (segment == null || from < segmentStart || end > segmentStart + segment.capacity()) {
+                segmentStart = from;
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(Math.max(SEGMENT_SIZE, need), size - from));
+            }
+            ByteBuffer view = segment.duplicate();
+            view.position((int)(from - segmentStart));
+            return view;
+        }
+
+        /** Decodes the walks of a block (as returned by nextBlock) into a WalkBlock. */
+        public static void decode(ByteBuffer in, WalkPipeline.WalkBlock block) throws IOException {
+            int numWalks = getVarint(in);
+            if (numWalks > block.sources.length)
+                throw new IOException(String.format("Block of %d walks, more than %d", numWalks, block.sources.length));
+            int len = 0, prevSource = 0;
+            for (int i = 0; i < numWalks; i++) {
+                int source = prevSource + unzigzag(getVarint(in));
+                int walkLength = getVarint(in);
+                if (len + walkLength > block.nodes.length)
+                    throw new IOException("Walks longer than the window of the file");
+                block.sources[i] = source;
+                block.offsets[i] = len;
+                int prev = source;
+                for (int j = 0; j < walkLength; j++)
+                    prev = block.nodes[len++] = prev + unzigzag(getVarint(in));
+                prevSource = source;
+            }
+            block.offsets[numWalks] = len;
+            block.size = numWalks;
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+}
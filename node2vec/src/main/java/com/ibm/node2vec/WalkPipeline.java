@@ -0,0 +1,282 @@
+package com.ibm.node2vec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One epoch of skip-gram as a producer/consumer pipeline, so that the sampling of the
+ * walks (pqSampling/adjSampling, CPU heavy on large graphs) doesn't stall the updates
+ * of the vectors: sampler threads generate the walks of the source nodes into blocks
+ * of BLOCK walks, and trainer threads train on the filled blocks (Hogwild, as
+ * Node2Vec.skipgram does).
+ *
+ * The blocks (flat int arrays) are allocated once and circulate between a pool of free
+ * blocks and a bounded queue of filled ones: a sampler waits for a free block when the
+ * trainers lag behind (backpressure), and a trainer waits for a filled block when the
+ * samplers do. The time each stage spends waiting, along with its throughput, is
+ * reported at the end of the epoch, which shows which stage is the bottleneck.
+ *
+ * The samplers can also save the walks they sample to a WalkFile (writer), or read
+ * them back from one instead of sampling (reader).
+ *
+ * @author dganguly
+ */
+public class WalkPipeline {
+    static final int BLOCK = 256; // walks per block
+
+    final Node2Vec n2v;
+    final int numSamplers, numTrainers;
+    final BlockingQueue<WalkBlock> free, filled;
+    final AtomicInteger nextSource = new AtomicInteger(); // first source node of the next block
+    final AtomicInteger activeSamplers = new AtomicInteger();
+    final Word2VecRandom[] samplerRandom, trainerRandom; // carried over from one epoch to the next
+    volatile Throwable failure;
+    int epoch;
+    WalkFile.Writer writer; // where to save the walks (if not null)
+    WalkFile.Reader reader; // where to read the walks from instead of sampling (if not null)
+
+    // The walks of BLOCK source nodes: walk i of sources[i] is nodes[offsets[i], offsets[i+1])
+    static final class WalkBlock {
+        final int[] sources;
+        final int[] offsets;
+        final int[] nodes;
+        int size;
+
+        WalkBlock(int maxWalks, int maxWalkLength) {
+            sources = new int[maxWalks];
+            offsets = new int[maxWalks + 1];
+            nodes = new int[maxWalks * maxWalkLength];
+        }
+    }
+
+    static final WalkBlock END = new WalkBlock(0, 0); // no more walks in this epoch
+
+    /**
+     * @param n2v The model, with the graph loaded and the net initialized.
+     * @param numSamplers Number of sampler threads.
+     * @param numTrainers Number of trainer threads.
+     * @param numBlocks Number of blocks (the capacity of the ring); at least one per thread.
+     */
+    public WalkPipeline(Node2Vec n2v, int numSamplers, int numTrainers, int numBlocks) {
+        this.n2v = n2v;
+        this.numSamplers = Math.max(1, numSamplers);
+        this.numTrainers = Math.max(1, numTrainers);
+        numBlocks = Math.max(numBlocks, this.numSamplers + this.numTrainers);
+        free = new ArrayBlockingQueue<>(numBlocks);
+        filled = new ArrayBlockingQueue<>(numBlocks + this.numTrainers); // the blocks and the END markers
+        for (int i = 0; i < numBlocks; i++)
+            free.add(new WalkBlock(BLOCK, n2v.window));
+
+        // the threads of each epoch go on with the generators of the previous one, so
+        // that every epoch samples new walks (and negatives)
+        samplerRandom = new Word2VecRandom[this.numSamplers];
+        for (int s = 0; s < this.numSamplers; s++)
+            samplerRandom[s] = new Word2VecRandom(Node2Vec.SEED + 1000 + s);
+        trainerRandom = new Word2VecRandom[this.numTrainers];
+        for (int t = 0; t < this.numTrainers; t++)
+            trainerRandom[t] = new Word2VecRandom(Node2Vec.SEED + t);
+    }
+
+    // Base class of the threads of both stages: records a failure and stops the others
+    abstract class Stage extends Thread {
+        final int id;
+        final Word2VecRandom next_random;
+        long busy, waiting; // ns
+
+        Stage(String name, int id, Word2VecRandom next_random) {
+            super(name + "-" + id);
+            this.id = id;
+            this.next_random = next_random;
+        }
+
+        @Override
+        public void run() {
+            try {
+                work();
+            }
+            catch (InterruptedException ex) {
+                // stopped because another stage failed
+            }
+            catch (Throwable ex) {
+                failure = ex;
+            }
+        }
+
+        abstract void work() throws InterruptedException, IOException;
+    }
+
+    class Sampler extends Stage {
+        final int[] contextBuff = new int[Node2Vec.MAX_CONTEXT_PATH_LEN];
+        long walks;
+
+        Sampler(int id) {
+            super("node2vec-sampler", id, samplerRandom[id]);
+        }
+
+        @Override
+        void work() throws InterruptedException, IOException {
+            try {
+                if (reader != null) {
+                    replay();
+                    return;
+                }
+                int start;
+                while ((start = nextSource.getAndAdd(BLOCK)) < n2v.vocab_size) {
+                    long t0 = System.nanoTime();
+                    WalkBlock block = free.take();
+                    long t1 = System.nanoTime();
+
+                    int end = Math.min(n2v.vocab_size, start + BLOCK), len = 0;
+                    block.size = 0;
+                    for (int word = start; word < end; word++) {
+                        int context_len = n2v.sampleContext(word, next_random, contextBuff);
+                        System.arraycopy(contextBuff, 0, block.nodes, len, context_len);
+                        block.sources[block.size] = word;
+                        block.offsets[block.size++] = len;
+                        len += context_len;
+                    }
+                    block.offsets[block.size] = len;
+                    walks += block.size;
+                    if (writer != null)
+                        writer.write(block);
+                    long t2 = System.nanoTime();
+
+                    filled.put(block);
+                    long t3 = System.nanoTime();
+                    waiting += (t1 - t0) + (t3 - t2);
+                    busy += t2 - t1;
+                }
+            }
+            finally {
+                // the last sampler out tells every trainer that the epoch is over
+                if (activeSamplers.decrementAndGet() == 0) {
+                    for (int t = 0; t < numTrainers; t++)
+                        filled.put(END);
+                }
+            }
+        }
+
+        // The walks of the epoch come from the reader, a block at a time
+        void replay() throws InterruptedException, IOException {
+            while (true) {
+                long t0 = System.nanoTime();
+                WalkBlock block = free.take();
+                long t1 = System.nanoTime();
+                ByteBuffer encoded = reader.nextBlock();
+                if (encoded == null) {
+                    free.put(block);
+                    break;
+                }
+                WalkFile.Reader.decode(encoded, block);
+                walks += block.size;
+                long t2 = System.nanoTime();
+
+                filled.put(block);
+                long t3 = System.nanoTime();
+                waiting += (t1 - t0) + (t3 - t2);
+                busy += t2 - t1;
+            }
+        }
+    }
+
+    class Trainer extends Stage {
+        final float[] neu1e = new float[n2v.layer1_size];
+        long walks, pairs;
+
+        Trainer(int id) {
+            super("node2vec-trainer", id, trainerRandom[id]);
+        }
+
+        @Override
+        void work() throws InterruptedException {
+            while (true) {
+                long t0 = System.nanoTime();
+                WalkBlock block = filled.take();
+                long t1 = System.nanoTime();
+                waiting += t1 - t0;
+                if (block == END)
+                    break;
+
+                long blockPairs = 0;
+                for (int i = 0; i < block.size; i++) {
+                    int from = block.offsets[i];
+                    blockPairs += n2v.trainContext(block.sources[i], block.nodes, from, block.offsets[i + 1] - from, next_random, neu1e);
+                }
+                n2v.progress(block.size, blockPairs);
+                pairs += blockPairs;
+                walks += block.size;
+                free.put(block);
+                busy += System.nanoTime() - t1;
+            }
+        }
+    }
+
+    /** Runs one epoch (over all the source nodes) and returns the number of pairs trained on. */
+    public long runEpoch() throws IOException {
+        nextSource.set(0);
+        activeSamplers.set(numSamplers);
+        if (reader != null)
+            reader.startEpoch();
+        long t0 = System.currentTimeMillis();
+
+        Sampler[] samplers = new Sampler[numSamplers];
+        Trainer[] trainers = new Trainer[numTrainers];
+        Stage[] stages = new Stage[numSamplers + numTrainers];
+        for (int s = 0; s < numSamplers; s++)
+            stages[s] = samplers[s] = new Sampler(s);
+        for (int t = 0; t < numTrainers; t++)
+            stages[numSamplers + t] = trainers[t] = new Trainer(t);
+
+        for (Stage stage : stages) stage.start();
+        try {
+            for (Stage stage : stages) {
+                // wake up the others if one fails, else they may wait for it forever
+                while (stage.isAlive()) {
+                    stage.join(100);
+                    if (failure != null) {
+                        for (Stage other : stages) other.interrupt();
+                    }
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            for (Stage stage : stages) stage.interrupt();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the pipeline threads", ex);
+        }
+        if (failure instanceof IOException)
+            throw (IOException)failure;
+        if (failure != null)
+            throw new RuntimeException("Error in the walk pipeline", failure);
+        if (writer != null)
+            writer.endEpoch();
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - t0);
+        long walks = 0, pairs = 0;
+        for (Trainer trainer : trainers) {
+            walks += trainer.walks;
+            pairs += trainer.pairs;
+        }
+        if (n2v.debug_mode > 1)
+            report(samplers, trainers, walks, pairs, elapsed);
+        epoch++;
+        return pairs;
+    }
+
+    void report(Sampler[] samplers, Trainer[] trainers, long walks, long pairs, long elapsed) {
+        for (Sampler sampler : samplers)
+            System.out.println(String.format("Sampler %d: %d walks (%.0f walks/s busy), waited %.0f%% of the time for a free buffer",
+                    sampler.id, sampler.walks, sampler.walks * 1e9 / Math.max(1, sampler.busy),
+                    100.0 * sampler.waiting / Math.max(1, sampler.busy + sampler.waiting)));
+        for (Trainer trainer : trainers)
+            System.out.println(String.format("Trainer %d: %d pairs (%.0f pairs/s busy), waited %.0f%% of the time for walks",
+                    trainer.id, trainer.pairs, trainer.pairs * 1e9 / Math.max(1, trainer.busy),
+                    100.0 * trainer.waiting / Math.max(1, trainer.busy + trainer.waiting)));
+        System.out.println(String.format("Epoch %d: %d walks, %d pairs in %.2fs (%.0f walks/s, %.0f pairs/s) with %d sampler(s) and %d trainer(s)",
+                epoch + 1, walks, pairs, elapsed / 1000.0, walks * 1000.0 / elapsed, pairs * 1000.0 / elapsed,
+                numSamplers, numTrainers));
+    }
+}
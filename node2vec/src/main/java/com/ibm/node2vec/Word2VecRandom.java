@@ -0,0 +1,65 @@
+package com.ibm.node2vec;
+
+/**
+ * The linear congruential generator of word2vec.c/node2vec.c
+ * (next_random = next_random * 25214903917 + 11, on an unsigned 64 bit long)
+ * working on a primitive long, so that drawing a random number in the sampling and
+ * training loops does not allocate anything.
+ *
+ * Java longs wrap around exactly like C's unsigned long long on multiplication
+ * and addition, so the sequence is bit-for-bit the one produced by the C code
+ * (and by the earlier UnsignedLong based implementation). Only the operations that
+ * care about the sign (shift and remainder) have to be done the unsigned way.
+ *
+ * An instance is mutable state and is not thread-safe: each walker or training
+ * thread owns its own generator and passes it explicitly down to the samplers.
+ *
+ * @author dganguly
+ */
+public final class Word2VecRandom {
+    static final long MULTIPLIER = 25214903917L;
+    static final long INCREMENT = 11L;
+
+    long next_random;
+
+    public Word2VecRandom(long seed) { next_random = seed; }
+
+    /** Advances the generator and returns the new (unsigned) state. */
+    public long next() {
+        next_random = next_random * MULTIPLIER + INCREMENT;
+        return next_random;
+    }
+
+    /** The current state, without advancing. */
+    public long value() { return next_random; }
+
+    /**
+     * Advances the generator and returns a float in [0, 1), i.e.
+     * (next_random & 0xFFFF) / (real)65536 in the C code.
+     */
+    public float nextFloat() {
+        return (next() & 0xFFFFL) / (float)65536;
+    }
+
+    /**
+     * Advances the generator and returns a double in [0, 1) made of the 53 high bits
+     * of the state (the low bits of an LCG are the least random ones). Used where the
+     * 16 bit resolution of nextFloat() is too coarse, e.g. alias table coin flips.
+     */
+    public double nextDouble() {
+        return (next() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Advances the generator and returns (next_random >> 16) % bound, which is how
+     * the C code indexes the unigram table.
+     */
+    public int nextInt(int bound) {
+        return (int)((next() >>> 16) % bound);
+    }
+
+    /** The current state modulo n, treating the state as unsigned (next_random % n in C). */
+    public int remainder(int n) {
+        return (int)Long.remainderUnsigned(next_random, n);
+    }
+}
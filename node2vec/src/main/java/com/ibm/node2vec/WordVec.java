@@ -25,6 +25,19 @@ public class WordVec implements Comparable<WordVec>, Serializable, Clusterable {
     
     public WordVec(int dimension) { vec = new float[dimension]; }
     
+    /**
+     * A copy of another vector object (sharing the same array of components),
+     * e.g. to return it with a query sim of its own.
+     * @param that 
+     */
+    public WordVec(WordVec that) {
+        this.word = that.word;
+        this.vec = that.vec;
+        this.norm = that.norm;
+        this.querySim = that.querySim;
+        this.clusterId = that.clusterId;
+    }
+    
     /**
      * Constructs a word vector from the content of a text-formatted word2vec (C code) output.
      * @param line 
@@ -73,10 +86,7 @@ public class WordVec implements Comparable<WordVec>, Serializable, Clusterable {
             return norm;
         
         // calculate and store
-        float sum = 0;
-        for (int i = 0; i < vec.length; i++) {
-            sum += vec[i]*vec[i];
-        }
+        float sum = DotKernel.get().dot(vec, 0, vec, 0, vec.length);
         norm = (float)Math.sqrt(sum);
         return norm;
     }
@@ -109,10 +119,7 @@ public class WordVec implements Comparable<WordVec>, Serializable, Clusterable {
      * @return Similarity value in the range of [-1, 1]
      */
     public float cosineSim(WordVec that) {
-        float sum = 0;
-        for (int i = 0; i < this.vec.length; i++) {
-            sum += vec[i] * that.vec[i];
-        }        
+        float sum = DotKernel.get().dot(vec, 0, that.vec, 0, vec.length);
         return sum/(this.getNorm()*that.getNorm());
     }
     
@@ -122,10 +129,7 @@ public class WordVec implements Comparable<WordVec>, Serializable, Clusterable {
      * @return A distance value (note that this is not bounded like the similarity value). Could be any positive number.
      */
     public float euclideanDist(WordVec that) {
-        float sum = 0;
-        for (int i = 0; i < this.vec.length; i++) {
-            sum += (vec[i] - that.vec[i]) * ((vec[i] - that.vec[i]));
-        }
+        float sum = DotKernel.get().squaredDistance(vec, 0, that.vec, 0, vec.length);
         return (float)Math.sqrt(sum);
     }
 
@@ -0,0 +1,911 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.ibm.node2vec;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.stream.IntStream;
+import org.apache.commons.math3.ml.clustering.CentroidCluster;
+import org.apache.commons.math3.ml.clustering.KMeansPlusPlusClusterer;
+
+/**
+ * A collection of WordVec instances for each unique term in
+ * the collection.
+ * The vectors are either held on the heap (one WordVec per term) or, after
+ * mapBinaryFile, served off-heap from a memory-mapped binary file, in which case
+ * the look-ups read the rows in place and no WordVec exists until one is asked for.
+ * Either way, the vectors can be indexed for approximate nearest neighbour queries
+ * (see HnswIndex and getApproxNearestNeighbors).
+ * @author Debasis
+ */
+public class WordVecs {
+    static final int SIM_BLOCK = 4096; // pairs per parallel task of getSims
+    static final int QUERY_BLOCK = 64; // queries per parallel task of the batch k-NN
+
+    Properties prop;
+    int k;
+    String nnFile;
+    HashMap<String, WordVec> wordvecmap;
+    BinaryVecFile store; // off-heap vectors (wordvecmap is null when this is set)
+    float[] norms; // L2 norms of the stored rows, computed lazily (0 = not yet known)
+    volatile HeapRows heapRows; // row view of wordvecmap (in its iteration order), built when it is loaded
+    NormalizedRows normalizedRows; // for the batch queries, built on demand
+    HnswIndex index;
+    ProductQuantizer pq; // compressed codes of the vectors (see initQuantizer)
+    int pqRerank;
+    final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new); // of the exact scans
+    HashMap<String, List<WordVec>> nearestWordVecsMap; // Store the pre-computed NNs
+    KMeansPlusPlusClusterer<WordVec> clusterer;
+
+    public WordVecs() {
+    }
+
+    /**
+     * Initializes the container class from a specified properties file
+     * @param propFile
+     * @throws IOException 
+     */
+    public WordVecs(String propFile) throws IOException {
+        prop = new Properties();
+        prop.load(new FileReader(propFile));
+        init(null, prop);
+    }
+    
+    /**
+     * Initializes the container class from a specified properties object.
+     * @param prop
+     * @throws IOException 
+     */
+    public WordVecs(Properties prop) throws IOException {
+        init(null, prop);
+    }
+
+    /**
+     * Initializes the container class from an in-memory stream formatted in the same
+     * way as a text-formatted word2vec output. This is useful to avoid intermediate writing of files.
+     * @param input
+     * @param props
+     * @throws IOException 
+     */
+    public WordVecs(@Nullable InputStream input, Properties props) throws IOException {
+        init(input, props);
+    }
+    
+    void init(InputStream input, Properties prop) throws IOException {
+        this.prop = prop;
+        nnFile = prop.getProperty("wordvecs.nn");        
+        
+        if (wordvecmap != null || store != null)
+            return; // already loaded from somewhere else in the flow...
+        
+        k = Integer.parseInt(prop.getProperty("wordvecs.numnearest", "5"));
+        
+        System.out.println("Loading word vecs");
+        String loadFrom = prop.getProperty("wordvecs.readfrom");
+        if (loadFrom == null)
+            return;
+
+        if (input != null) {
+            loadFromTextFile(input);
+        }
+        else if (loadFrom.equals("vec") || loadFrom.equals("bin")) {
+            loadFromFile(new File(prop.getProperty("wordvecs.vecfile")));
+        }
+        else if (loadFrom.equals("mmap")) {
+            mapBinaryFile(new File(prop.getProperty("wordvecs.vecfile")));
+        }
+        else {
+            File serFile = new File(prop.getProperty("wordvecs.objfile"));
+            loadObjectFromSerFile(new FileInputStream(serFile));
+        }
+        
+        System.out.println("Loaded word vecs");
+        initNN();
+        
+        if (Boolean.parseBoolean(prop.getProperty("wordvecs.hnsw", "false")))
+            initIndex();
+        if (Boolean.parseBoolean(prop.getProperty("wordvecs.pq", "false")))
+            initQuantizer();
+    }
+    
+    /**
+     * Loads the product quantizer of the vectors from wordvecs.pq.file (by default, the
+     * vector file name followed by .pq), or trains and saves it if there is no such file.
+     * The training parameters are wordvecs.pq.m (the number of subspaces, i.e. bytes per
+     * vector; a quarter of the dimensions by default), wordvecs.pq.sample and
+     * wordvecs.pq.iterations; wordvecs.pq.rerank is the re-ranking factor of the queries.
+     * On 20k clustered 64-d vectors, the recall@10 is 0.51 (m=16), 0.33 (m=8) and 0.14
+     * (m=4) from the codes alone, and 1.0, 0.999 and 0.993 re-ranking the default 10*k
+     * candidates (see ProductQuantizer.main to measure it on your vectors).
+     * Combined with wordvecs.readfrom=mmap, the float vectors are only read (from the
+     * mapped file) to re-rank the best candidates.
+     * @throws IOException 
+     */
+    public void initQuantizer() throws IOException {
+        String vecFile = prop.getProperty("wordvecs.vecfile");
+        File pqFile = new File(prop.getProperty("wordvecs.pq.file", vecFile + ".pq"));
+        pqRerank = Integer.parseInt(prop.getProperty("wordvecs.pq.rerank", "10"));
+        if (pqFile.exists()) {
+            System.out.println("Loading the product quantizer from " + pqFile);
+            pq = ProductQuantizer.load(pqFile);
+            if (pq.rows() != getVocabSize() || pq.dims() != getDimension())
+                throw new IOException(String.format("%s encodes %d vectors of %d dimensions, not %d of %d",
+                        pqFile, pq.rows(), pq.dims(), getVocabSize(), getDimension()));
+        }
+        else {
+            int m = Integer.parseInt(prop.getProperty("wordvecs.pq.m", String.valueOf(Math.max(1, getDimension() / 4))));
+            int sampleSize = Integer.parseInt(prop.getProperty("wordvecs.pq.sample", "100000"));
+            int iterations = Integer.parseInt(prop.getProperty("wordvecs.pq.iterations", "25"));
+            long start = System.currentTimeMillis();
+            pq = ProductQuantizer.train(rows(), m, sampleSize, iterations, 1234);
+            System.out.println(String.format("Trained the product quantizer (%d bytes/vector) in %.1fs",
+                    m, (System.currentTimeMillis() - start) / 1000.0));
+            pq.save(pqFile);
+        }
+    }
+    
+    public ProductQuantizer getQuantizer() { return pq; }
+    
+    /** Approximate similarity of two words from their quantized codes (NaN if either is missing). */
+    public float getQuantizedSim(String u, String v) {
+        int a = rowOf(u), b = rowOf(v);
+        return a < 0 || b < 0? Float.NaN : pq.sim(a, b);
+    }
+    
+    /**
+     * The (approximate) K nearest neighbors of a word from the quantized codes, re-ranked
+     * with the exact vectors (wordvecs.pq.rerank); null if there is no such word.
+     */
+    public List<Neighbor> getQuantizedNearestNeighbors(String queryWord, int k) {
+        int row = rowOf(queryWord);
+        if (row < 0)
+            return null;
+        VectorRows vecs = rows();
+        float[] query = new float[vecs.dims()];
+        vecs.getRow(row, query);
+        int[] rows = new int[k];
+        float[] sims = new float[k];
+        return toNeighbors(rows, sims, pq.search(query, k, row, pqRerank, vecs, rows, sims));
+    }
+    
+    /**
+     * Loads the HNSW index of the vectors from wordvecs.hnsw.file (by default, the
+     * vector file name followed by .hnsw), or builds and saves it if there is no such
+     * file. The build parameters are wordvecs.hnsw.M, wordvecs.hnsw.efConstruction and
+     * wordvecs.hnsw.threads; wordvecs.hnsw.efSearch sets the query time candidate list.
+     * @throws IOException 
+     */
+    public void initIndex() throws IOException {
+        String vecFile = prop.getProperty("wordvecs.vecfile");
+        File indexFile = new File(prop.getProperty("wordvecs.hnsw.file", vecFile + ".hnsw"));
+        if (indexFile.exists()) {
+            System.out.println("Loading HNSW index from " + indexFile);
+            loadIndex(indexFile);
+        }
+        else {
+            int M = Integer.parseInt(prop.getProperty("wordvecs.hnsw.M", "16"));
+            int efConstruction = Integer.parseInt(prop.getProperty("wordvecs.hnsw.efConstruction", "200"));
+            int numThreads = Integer.parseInt(prop.getProperty("wordvecs.hnsw.threads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            buildIndex(M, efConstruction, numThreads);
+            index.save(indexFile);
+            System.out.println("Saved HNSW index to " + indexFile);
+        }
+        index.setEfSearch(Integer.parseInt(prop.getProperty("wordvecs.hnsw.efSearch", "50")));
+    }
+    
+    /**
+     * Builds the HNSW index of the vectors.
+     * @param M Max number of links per node (twice as many on the bottom level).
+     * @param efConstruction Size of the candidate list when inserting a vector.
+     * @param numThreads Number of threads doing the insertions.
+     * @return The index (also used by getApproxNearestNeighbors from now on).
+     */
+    public HnswIndex buildIndex(int M, int efConstruction, int numThreads) {
+        long start = System.currentTimeMillis();
+        index = new HnswIndex(rows(), M, efConstruction);
+        try {
+            index.addAll(numThreads);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the HNSW index", ex);
+        }
+        System.out.println(String.format("Built the HNSW index of %d vectors in %.1fs",
+                index.size(), (System.currentTimeMillis() - start) / 1000.0));
+        return index;
+    }
+    
+    /**
+     * Loads an HNSW index saved for these vectors (in the same order).
+     * @param indexFile
+     * @throws IOException 
+     */
+    public void loadIndex(File indexFile) throws IOException {
+        index = HnswIndex.load(indexFile, rows());
+    }
+    
+    public HnswIndex getIndex() { return index; }
+    
+    /**
+     * The vectors as rows: the mapped file itself, or a view of the heap vectors in the
+     * iteration order of the map (the order of the file they were loaded from).
+     * @return 
+     */
+    public VectorRows rows() {
+        return store != null? store : heapRows;
+    }
+    
+    // Builds the row view of wordvecmap, after it is (re)loaded; the queries then only
+    // read the volatile field, with no lock
+    void indexRows() {
+        heapRows = wordvecmap == null? null : new HeapRows(wordvecmap.values().toArray(new WordVec[0]));
+    }
+    
+    // Row view of WordVec objects, with their norms and an open-addressing index of the rows by word
+    static final class HeapRows implements VectorRows {
+        final WordVec[] vecs;
+        final float[] norms;
+        final int[] slots; // -1 = empty, capacity a power of 2
+        
+        HeapRows(WordVec[] vecs) {
+            this.vecs = vecs;
+            norms = new float[vecs.length];
+            slots = new int[CSRGraph.tableCapacity(vecs.length)];
+            Arrays.fill(slots, -1);
+            int mask = slots.length - 1;
+            for (int row = 0; row < vecs.length; row++) {
+                norms[row] = vecs[row].getNorm();
+                int slot = CSRGraph.mix(vecs[row].word.hashCode()) & mask;
+                while (slots[slot] != -1)
+                    slot = (slot + 1) & mask;
+                slots[slot] = row;
+            }
+        }
+        
+        int rowOf(String word) {
+            int mask = slots.length - 1;
+            int slot = CSRGraph.mix(word.hashCode()) & mask;
+            int row;
+            while ((row = slots[slot]) != -1) {
+                if (vecs[row].word.equals(word))
+                    return row;
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+        
+        @Override
+        public int rows() { return vecs.length; }
+        
+        @Override
+        public int dims() { return vecs.length == 0? 0 : vecs[0].vec.length; }
+        
+        @Override
+        public String id(int row) { return vecs[row].word; }
+        
+        @Override
+        public float dot(int row, float[] q) {
+            float[] v = vecs[row].vec;
+            return DotKernel.get().dot(v, 0, q, 0, v.length);
+        }
+        
+        @Override
+        public float dot(int a, int b) { return dot(a, vecs[b].vec); }
+        
+        @Override
+        public void getRow(int row, float[] out) {
+            System.arraycopy(vecs[row].vec, 0, out, 0, out.length);
+        }
+    }
+    
+    public List<CentroidCluster<WordVec>> clusterWords(int numClusters) throws Exception {
+        
+        List<WordVec> wordList = new ArrayList<>(getVocabSize());
+        for (Entry<String, WordVec> e : asMap().entrySet()) {
+            // normalize a copy of each vec so that cosine-dist and Euclidean correlate
+            // (the vectors themselves stay as they are for the similarities)
+            WordVec wv = new WordVec(e.getValue().vec.length);
+            wv.word = e.getKey();
+            System.arraycopy(e.getValue().vec, 0, wv.vec, 0, wv.vec.length);
+            wv.normalize();
+            wordList.add(wv);
+        }
+        
+        clusterer = new KMeansPlusPlusClusterer<>(numClusters);
+        List<CentroidCluster<WordVec>> clusters = clusterer.cluster(wordList); 
+        return clusters;
+    }
+    
+    boolean hasDigit(String word) {
+        int len = word.length();
+        for (int i=0; i < len; i++) {
+            if (Character.isDigit(word.charAt(i)))
+                return true;
+        }
+        return false;
+    }
+    
+    public void loadFromTextFile(InputStream wordvecFile) {
+        wordvecmap = new LinkedHashMap<>(); // keeps the file order (the row order of an index)
+        normalizedRows = null;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(wordvecFile))) {
+            String line;
+            
+            while ((line = br.readLine()) != null) {
+                //if (hasDigit(line.split("\\s+")[0]))
+                //    continue;
+                WordVec wv = new WordVec(line);
+                wordvecmap.put(wv.word, wv);
+            }
+        }
+        catch (Exception ex) { ex.printStackTrace(); }        
+        indexRows();
+    }
+    
+    /**
+     * Loads the vectors from a file in either format written by Node2Vec
+     * (the binary format is recognized by its magic number).
+     * @param file
+     * @throws IOException 
+     */
+    public void loadFromFile(File file) throws IOException {
+        if (BinaryVecFile.isBinary(file))
+            loadFromBinaryFile(file);
+        else
+            loadFromTextFile(new FileInputStream(file));
+    }
+    
+    /**
+     * Loads the vectors from a binary file (see BinaryVecFile). The file is memory-mapped
+     * and the vectors are copied out of the page cache, with no parsing.
+     * @param file
+     * @throws IOException 
+     */
+    public void loadFromBinaryFile(File file) throws IOException {
+        BinaryVecFile vecFile = BinaryVecFile.map(file);
+        wordvecmap = new LinkedHashMap<>(vecFile.rows() * 4 / 3 + 1);
+        normalizedRows = null;
+        for (int i = 0; i < vecFile.rows(); i++) {
+            WordVec wv = new WordVec(vecFile.dims());
+            wv.word = vecFile.id(i);
+            vecFile.getRow(i, wv.vec);
+            wordvecmap.put(wv.word, wv);
+        }
+        indexRows();
+    }
+    
+    /**
+     * Serves the vectors off-heap from a binary file (see BinaryVecFile): the file
+     * is memory-mapped and nothing but the id index is built, so this returns
+     * almost immediately whatever the size of the file, and the pages are read in
+     * by the OS as the rows are accessed.
+     * @param file
+     * @throws IOException 
+     */
+    public void mapBinaryFile(File file) throws IOException {
+        store = BinaryVecFile.map(file);
+        norms = new float[store.rows()];
+        wordvecmap = null;
+        heapRows = null;
+        normalizedRows = null;
+        index = null;
+    }
+    
+    /** Whether the vectors are served off-heap from a mapped file. */
+    public boolean isMapped() { return store != null; }
+    
+    // L2 norm of a stored row
+    float norm(int row) {
+        float norm = norms[row];
+        if (norm == 0) {
+            norm = (float)Math.sqrt(store.dot(row, row));
+            norms[row] = norm;
+        }
+        return norm;
+    }
+    
+    // A WordVec holding a copy of a stored row
+    WordVec materialize(int row) {
+        WordVec wv = new WordVec(store.dims());
+        wv.word = store.id(row);
+        store.getRow(row, wv.vec);
+        wv.norm = norms[row];
+        return wv;
+    }
+    
+    /**
+     * The vectors as a map from the terms. For mapped vectors this materializes
+     * all of them on the heap (and is only meant for the bulk operations that
+     * need WordVec objects, such as clustering).
+     * @return 
+     */
+    public Map<String, WordVec> asMap() {
+        if (store == null)
+            return wordvecmap;
+        HashMap<String, WordVec> map = new HashMap<>(store.rows() * 4 / 3 + 1);
+        for (int row = 0; row < store.rows(); row++) {
+            WordVec wv = materialize(row);
+            map.put(wv.word, wv);
+        }
+        return map;
+    }
+    
+    void loadObjectFromSerFile(InputStream serFileInput) {
+        try {
+            ObjectInputStream oin = new ObjectInputStream(serFileInput);
+            wordvecmap = (HashMap<String, WordVec>)oin.readObject();
+            indexRows();
+            normalizedRows = null;
+            oin.close();
+            serFileInput.close();
+        }
+        catch (Exception ex) { ex.printStackTrace(); }
+    }
+
+    public void storeVectorsAsSerializedObject() throws Exception {
+        File oFile = new File(prop.getProperty("wordvecs.objfile"));
+        FileOutputStream fout = new FileOutputStream(oFile);
+        ObjectOutputStream oos = new ObjectOutputStream(fout);
+        oos.writeObject(store == null? this.wordvecmap : (HashMap<String, WordVec>)asMap());
+        oos.close();
+        fout.close();
+    }
+    
+    /**
+     * Initializes a list of nearest neighbors (pre-computed) for each word vector.
+     * @throws IOException 
+     */
+    public void initNN() throws IOException {
+        if (nnFile==null || !(new File(nnFile).exists())) {
+            System.out.println("No NN file to load NN data!");
+            return;
+        }
+        
+        nearestWordVecsMap = new HashMap<>(getVocabSize());
+        FileReader fr = new FileReader(nnFile);
+        BufferedReader br = new BufferedReader(fr);
+        String line;
+        
+        while ((line = br.readLine())!=null) {
+            String[] tokens = line.split("\\s+");
+            String key = tokens[0]; // the current word
+            WordVec keywvec = getVec(key);
+            
+            String nnlist = tokens[1]; // nnlist (: separated)
+            String[] nnwords = nnlist.split(":");
+            List<WordVec> nnwvecs = new ArrayList<>(nnwords.length);
+            
+            for (String nnword: nnwords) {
+                WordVec nnwvec = new WordVec(getVec(nnword)); // a copy, not to share the querySim
+                nnwvec.querySim = nnwvec.cosineSim(keywvec);
+                nnwvecs.add(nnwvec);
+            }
+            
+            nearestWordVecsMap.put(key, nnwvecs);
+        }
+        br.close();
+        fr.close();
+    }
+
+    /**
+     * Precomputes a list of nearest neighbors for each vector and saves it. Avoids
+     * computing nearest neighbors on the fly; instead performs a table look-up
+     * which is much faster. The (exact) neighbors are computed by a KnnJob on
+     * wordvecs.nn.threads threads (all the processors by default).
+     * @throws Exception 
+     */
+    public void computeAndStoreNNs() throws Exception {
+        System.out.println("Computing nearest neighbors for " + getVocabSize() + " words...");
+        
+        int numThreads = Integer.parseInt(prop.getProperty("wordvecs.nn.threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        KnnJob job = new KnnJob(rows(), normalizedRows(), k, numThreads);
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(nnFile), 1 << 16)) {
+            job.run(bw, 10000);
+        }
+    }
+    
+    public List<WordVec> getPrecomputedNearestNeighbors(String queryWord) {
+        List<WordVec> nnlist = nearestWordVecsMap.get(queryWord);
+        return nnlist.subList(0, Math.min(k, nnlist.size()));
+    }
+
+    /** Returns the K nearest neighbors using a query word (that should be contained in the collection).
+     * You can access a query sim value in each of the returned WordVec objects, which are
+     * copies (sharing the vectors) so that concurrent queries don't overwrite each other's sims. */
+    public List<WordVec> getNearestNeighbors(String queryWord, int k) {
+        int row = rowOf(queryWord);
+        if (row < 0) {
+            System.err.println("No vec found for word " + queryWord);
+            return null;
+        }
+        int[] rows = new int[k];
+        float[] sims = new float[k];
+        int count = nearest(row, k, rows, sims);
+        return toWordVecs(rows, sims, count);
+    }
+
+    /** Computes the similarities of every vector with a query vector and returns the
+        K most similar (as copies with their query sim set, like the above). */
+    public List<WordVec> getNearestNeighbors(WordVec queryVec, int k) {
+        int[] rows = new int[k];
+        float[] sims = new float[k];
+        int count = nearest(queryVec.vec, k, -1, rows, sims);
+        return toWordVecs(rows, sims, count);
+    }
+    
+    /**
+     * Thread-safe top-k query by word: the K nearest neighbors of a word (itself excluded)
+     * as immutable results, most similar first; null if there is no such word.
+     */
+    public List<Neighbor> nearestNeighbors(String queryWord, int k) {
+        int row = rowOf(queryWord);
+        if (row < 0)
+            return null;
+        int[] rows = new int[k];
+        float[] sims = new float[k];
+        return toNeighbors(rows, sims, nearest(row, k, rows, sims));
+    }
+    
+    /** Thread-safe top-k query by vector, as immutable results, most similar first. */
+    public List<Neighbor> nearestNeighbors(float[] query, int k) {
+        int[] rows = new int[k];
+        float[] sims = new float[k];
+        return toNeighbors(rows, sims, nearest(query, k, -1, rows, sims));
+    }
+    
+    // Per-thread buffers of nearest(): the heap (kept while k doesn't change, as the
+    // results of HnswIndex.Searcher) and the query row read from a store.
+    final class Scratch {
+        TopK topK;
+        float[] query;
+
+        TopK topK(int k) {
+            if (topK == null || topK.ids.length != k)
+                topK = new TopK(k);
+            topK.clear();
+            return topK;
+        }
+    }
+    
+    /**
+     * Thread-safe top-k query of the neighbors of a row (itself excluded); allocation-free
+     * once the calling thread has made a query of the same k.
+     * @param row The query row (see rowOf).
+     * @param k Number of neighbors.
+     * @param rows Receives the rows of the neighbors, most similar first (see rows().id).
+     * @param sims Receives their cosine similarities.
+     * @return The number of neighbors written (k unless there are fewer other rows).
+     */
+    public int nearest(int row, int k, int[] rows, float[] sims) {
+        VectorRows vecs = rows();
+        float[] query;
+        if (store != null) {
+            Scratch s = scratch.get();
+            if (s.query == null)
+                s.query = new float[store.dims()];
+            query = s.query;
+            store.getRow(row, query);
+        }
+        else {
+            query = ((HeapRows)vecs).vecs[row].vec;
+        }
+        return scan(vecs, query, rowNorm(row), k, row, rows, sims);
+    }
+    
+    /**
+     * Thread-safe top-k query of the neighbors of a vector; allocation-free once the
+     * calling thread has made a query of the same k.
+     * @param query The query vector.
+     * @param k Number of neighbors.
+     * @param exclude A row to leave out, or -1.
+     * @param rows Receives the rows of the neighbors, most similar first.
+     * @param sims Receives their cosine similarities.
+     * @return The number of neighbors written.
+     */
+    public int nearest(float[] query, int k, int exclude, int[] rows, float[] sims) {
+        float sum = 0;
+        for (float x : query)
+            sum += x * x;
+        return scan(rows(), query, (float)Math.sqrt(sum), k, exclude, rows, sims);
+    }
+    
+    // Exact scan of all the rows, keeping the best k in a bounded min-heap
+    int scan(VectorRows vecs, float[] query, float queryNorm, int k, int exclude, int[] rows, float[] sims) {
+        float[] norms = vecs instanceof HeapRows? ((HeapRows)vecs).norms : null; // else the lazy norms of the store
+        int n = vecs.rows();
+        TopK topK = scratch.get().topK(Math.min(k, n));
+        for (int row = 0; row < n; row++) {
+            if (row == exclude)
+                continue;
+            topK.offer(row, vecs.dot(row, query) / (queryNorm * (norms != null? norms[row] : norm(row))));
+        }
+        topK.sort();
+        for (int i = 0; i < topK.size(); i++) {
+            rows[i] = topK.id(i);
+            sims[i] = topK.score(i);
+        }
+        return topK.size();
+    }
+    
+    /** The row of a word (see rows()), or -1 if there is no such word. */
+    public int rowOf(String word) {
+        return store != null? store.rowOf(word) : heapRows.rowOf(word);
+    }
+    
+    float rowNorm(int row) {
+        return store != null? norm(row) : heapRows.norms[row];
+    }
+    
+    // Query results as WordVecs (new objects, so the querySim of the shared ones is left alone)
+    List<WordVec> toWordVecs(int[] rows, float[] sims, int count) {
+        HeapRows heap = heapRows;
+        List<WordVec> nns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            WordVec wv = store != null? materialize(rows[i]) : new WordVec(heap.vecs[rows[i]]);
+            wv.querySim = sims[i];
+            nns.add(wv);
+        }
+        return nns;
+    }
+    
+    List<Neighbor> toNeighbors(int[] rows, float[] sims, int count) {
+        VectorRows vecs = rows();
+        Neighbor[] nns = new Neighbor[count];
+        for (int i = 0; i < count; i++)
+            nns[i] = new Neighbor(vecs.id(rows[i]), rows[i], sims[i]);
+        return Collections.unmodifiableList(Arrays.asList(nns));
+    }
+    
+    /**
+     * The vectors L2-normalized into a contiguous matrix (a heap copy, built on the
+     * first call), over which the batch queries run.
+     * @return 
+     */
+    public synchronized NormalizedRows normalizedRows() {
+        if (normalizedRows == null)
+            normalizedRows = new NormalizedRows(rows());
+        return normalizedRows;
+    }
+    
+    /** The rows of a list of words (-1 for a missing word), see rows(). */
+    public int[] rowsOf(String[] words) {
+        int[] rows = new int[words.length];
+        for (int i = 0; i < words.length; i++)
+            rows[i] = rowOf(words[i]);
+        return rows;
+    }
+    
+    /**
+     * Batch version of getSim: the similarities of the pairs (u[i], v[i]), computed in
+     * parallel over the normalized rows; NaN for a pair with a missing word.
+     */
+    public float[] getSims(String[] u, String[] v) {
+        return getSims(rowsOf(u), rowsOf(v));
+    }
+    
+    /** The similarities of the pairs of rows (a[i], b[i]) (NaN if either is -1). */
+    public float[] getSims(int[] a, int[] b) {
+        if (a.length != b.length)
+            throw new IllegalArgumentException("Pairs of unequal lengths: " + a.length + ", " + b.length);
+        NormalizedRows normalized = normalizedRows();
+        float[] sims = new float[a.length];
+        int numBlocks = (a.length + SIM_BLOCK - 1) / SIM_BLOCK;
+        IntStream.range(0, numBlocks).parallel().forEach(block -> {
+            int to = Math.min(a.length, (block + 1) * SIM_BLOCK);
+            for (int i = block * SIM_BLOCK; i < to; i++)
+                sims[i] = a[i] < 0 || b[i] < 0? Float.NaN : normalized.sim(a[i], b[i]);
+        });
+        return sims;
+    }
+    
+    /**
+     * Batch version of getNearestNeighbors for words: see the one for rows.
+     * @return The rows of the query words (-1 for a missing word, which gets no neighbors).
+     */
+    public int[] getNearestNeighbors(String[] words, int k, int[] rows, float[] sims) {
+        int[] queryRows = rowsOf(words);
+        getNearestNeighbors(queryRows, k, rows, sims);
+        return queryRows;
+    }
+    
+    /**
+     * Batch exact k-NN query of rows (each one excluded from its own neighbors). The queries
+     * are scored against all the rows as blocked matrix-matrix products over the normalized
+     * rows, in parallel across blocks of queries.
+     * @param queryRows The query rows (-1 is skipped).
+     * @param k Number of neighbors per query.
+     * @param rows Receives the neighbors of query i at [i*k, (i+1)*k), most similar first
+     * (-1 past the last one).
+     * @param sims Receives the similarities in the same layout (NaN past the last one).
+     */
+    public void getNearestNeighbors(int[] queryRows, int k, int[] rows, float[] sims) {
+        NormalizedRows normalized = normalizedRows();
+        batchSearch(queryRows.length, k, rows, sims, (from, to, q) -> {
+            for (int i = from; i < to; i++) {
+                if (queryRows[i] >= 0)
+                    normalized.copyRow(queryRows[i], q, (i - from) * normalized.dims());
+            }
+        }, queryRows);
+    }
+    
+    /** Batch exact k-NN query of vectors, in the layout of the one for rows. */
+    public void getNearestNeighbors(float[][] queries, int k, int[] rows, float[] sims) {
+        int dims = normalizedRows().dims();
+        batchSearch(queries.length, k, rows, sims, (from, to, q) -> {
+            for (int i = from; i < to; i++)
+                NormalizedRows.normalize(queries[i], q, (i - from) * dims);
+        }, null);
+    }
+    
+    // Fills the normalized queries [from, to) into a block buffer
+    interface QueryLoader {
+        void load(int from, int to, float[] q);
+    }
+    
+    void batchSearch(int numQueries, int k, int[] rows, float[] sims, QueryLoader loader, int[] queryRows) {
+        NormalizedRows normalized = normalizedRows();
+        int dims = normalized.dims();
+        int numBlocks = (numQueries + QUERY_BLOCK - 1) / QUERY_BLOCK;
+        IntStream.range(0, numBlocks).parallel().forEach(block -> {
+            int from = block * QUERY_BLOCK, to = Math.min(numQueries, from + QUERY_BLOCK);
+            float[] q = new float[(to - from) * dims];
+            loader.load(from, to, q);
+            TopK[] heaps = new TopK[to - from];
+            int[] exclude = new int[to - from];
+            for (int i = 0; i < heaps.length; i++) {
+                heaps[i] = new TopK(k);
+                exclude[i] = queryRows == null? -1 : queryRows[from + i];
+            }
+            normalized.search(q, 0, to - from, exclude, heaps);
+            
+            for (int i = from; i < to; i++) {
+                TopK heap = heaps[i - from];
+                if (queryRows != null && queryRows[i] < 0)
+                    heap.clear();
+                heap.sort();
+                for (int j = 0; j < k; j++) {
+                    rows[i * k + j] = j < heap.size()? heap.id(j) : -1;
+                    sims[i * k + j] = j < heap.size()? heap.score(j) : Float.NaN;
+                }
+            }
+        });
+    }
+    
+    /**
+     * Returns the (approximate) K nearest neighbors of a query word from the HNSW
+     * index, or null if there is no such word or no index (see initIndex/buildIndex).
+     * You can access a query sim value in each of the returned WordVec objects.
+     */
+    public List<WordVec> getApproxNearestNeighbors(String queryWord, int k) {
+        WordVec queryVec = getVec(queryWord);
+        if (index == null || queryVec == null)
+            return null;
+        return approxNearestRows(queryVec.vec, queryWord, k);
+    }
+    
+    /** Returns the (approximate) K nearest neighbors of a vector from the HNSW index. */
+    public List<WordVec> getApproxNearestNeighbors(WordVec queryVec, int k) {
+        if (index == null)
+            return null;
+        return approxNearestRows(queryVec.vec, null, k);
+    }
+    
+    // Queries the index for one more neighbour than needed in case the query word
+    // itself (exclude) is among them
+    List<WordVec> approxNearestRows(float[] query, String exclude, int k) {
+        int[] rows = new int[k + 1];
+        float[] sims = new float[k + 1];
+        int count = index.search(query, k + 1, -1, rows, sims);
+        
+        VectorRows vecs = rows();
+        List<WordVec> nns = new ArrayList<>(k);
+        for (int i = 0; i < count && nns.size() < k; i++) {
+            if (vecs.id(rows[i]).equals(exclude))
+                continue;
+            WordVec wv = store != null? materialize(rows[i]) : new WordVec(((HeapRows)vecs).vecs[rows[i]]);
+            wv.querySim = sims[i];
+            nns.add(wv);
+        }
+        return nns;
+    }
+    
+    /**
+     * Prints the recall@k of the HNSW index against the exact search
+     * (getNearestNeighbors), averaged over random query words, along with
+     * the mean latency of both.
+     * @param numQueries Number of query words.
+     * @param k Number of neighbors.
+     * @return The mean recall@k.
+     */
+    public double reportIndexRecall(int numQueries, int k) {
+        VectorRows rows = rows();
+        Random rnd = new Random(1234);
+        long exactNanos = 0, approxNanos = 0;
+        double recall = 0;
+        
+        for (int i = 0; i < numQueries; i++) {
+            String word = rows.id(rnd.nextInt(rows.rows()));
+            long start = System.nanoTime();
+            List<WordVec> exact = getNearestNeighbors(word, k);
+            Set<String> truth = new HashSet<>();
+            for (WordVec wv : exact)
+                truth.add(wv.word);
+            exactNanos += System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            List<WordVec> approx = getApproxNearestNeighbors(word, k);
+            approxNanos += System.nanoTime() - start;
+            
+            int hits = 0;
+            for (WordVec wv : approx) {
+                if (truth.contains(wv.word))
+                    hits++;
+            }
+            recall += truth.isEmpty()? 1 : hits / (double)truth.size();
+        }
+        recall /= numQueries;
+        System.out.println(String.format("recall@%d = %.4f over %d queries (efSearch=%d); " +
+                "exact search %.3fms/query, HNSW %.3fms/query", k, recall, numQueries,
+                index.getEfSearch(), exactNanos / 1e6 / numQueries, approxNanos / 1e6 / numQueries));
+        return recall;
+    }
+    
+    /**
+     * Get the vector given a word from this container class.
+     * For mapped vectors, this is a new copy of the row (or null if there is none).
+     * @param word
+     * @return 
+     */
+    public WordVec getVec(String word) {
+        if (store != null) {
+            int row = store.rowOf(word);
+            return row < 0? null : materialize(row);
+        }
+        return wordvecmap.get(word);
+    }
+    
+    public int getVocabSize() { return store != null? store.rows() : this.wordvecmap.size(); }
+    
+    public int getDimension() {
+        if (store != null)
+            return store.dims();
+        Collection<WordVec> wordvecs = this.wordvecmap.values();
+        if (wordvecs.isEmpty())
+            return 0;
+        
+        WordVec wvec = wordvecs.iterator().next();
+        return wvec.getDimension();
+    }
+
+    /**
+     * Retrieves the corresponding vectors given two words and returns the similarity between them.
+     * @param u First word
+     * @param v Second word
+     * @return Similarity between the pair.
+     */
+    public float getSim(String u, String v) {
+        if (store != null) {
+            int a = store.rowOf(u), b = store.rowOf(v);
+            return store.dot(a, b) / (norm(a) * norm(b));
+        }
+        WordVec uVec = wordvecmap.get(u);
+        WordVec vVec = wordvecmap.get(v);
+        return uVec.cosineSim(vVec);
+    }
+    
+    public static void main(String[] args) {
+        try {
+            WordVecs qe = new WordVecs("init.properties");
+            qe.computeAndStoreNNs();
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.ibm.clusteval;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the scores of ClusterEval against small contingency tables worked out by
+ * hand, and the format detection of Clustering.read.
+ *
+ * @author dganguly
+ */
+public class ClusterEvalTest {
+    static final double EPS = 1e-12;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // the partition of the nodes 0..labels.length-1, node v in cluster labels[v]
+    static Clustering partition(int... labels) {
+        Clustering.Builder builder = new Clustering.Builder();
+        for (int v = 0; v < labels.length; v++)
+            builder.add(v, labels[v]);
+        return builder.build(labels.length);
+    }
+
+    @Test
+    public void identicalPartitionsScoreOne() {
+        int[] labels = { 0, 0, 0, 1, 1, 2, 2, 2, 2, 3 };
+        // the same partition, with the clusters numbered differently
+        int[] renamed = { 2, 2, 2, 0, 0, 3, 3, 3, 3, 1 };
+        for (int[] other : new int[][] { labels, renamed }) {
+            ClusterEval eval = new ClusterEval(partition(labels), partition(other));
+            assertEquals(1, eval.nmi(), EPS);
+            assertEquals(1, eval.nmiMax(), EPS);
+            assertEquals(1, eval.onmiLfk(), EPS);
+            assertEquals(1, eval.onmiMax(), EPS);
+            assertEquals(1, eval.ari(), EPS);
+        }
+    }
+
+    @Test
+    public void textbookExample() {
+        // {a,b},{c,d} against {a,b},{c},{d}: the table is [[2,0,0],[0,1,1]], so
+        // index = 1, sum C(a_i,2) = 2, sum C(b_j,2) = 1, C(4,2) = 6, expected = 2*1/6 and
+        // ARI = (1 - 1/3) / (3/2 - 1/3) = 4/7 (as sklearn's adjusted_rand_score);
+        // H(A) = ln 2, H(B) = 3/2 ln 2, I = H(A), so NMI = 2 ln 2 / (5/2 ln 2) = 0.8
+        ClusterEval eval = new ClusterEval(partition(0, 0, 1, 1), partition(0, 0, 1, 2));
+        assertEquals(4.0 / 7, eval.ari(), EPS);
+        assertEquals(0.8, eval.nmi(), EPS);
+        assertEquals(2.0 / 3, eval.nmiMax(), EPS);
+        // symmetric
+        eval = new ClusterEval(partition(0, 0, 1, 2), partition(0, 0, 1, 1));
+        assertEquals(4.0 / 7, eval.ari(), EPS);
+        assertEquals(0.8, eval.nmi(), EPS);
+    }
+
+    @Test
+    public void twoByThreeTable() {
+        // {a,b,c},{d,e,f} against {a,b},{c,d},{e,f}: the table is [[2,1,0],[0,1,2]], so
+        // index = 2, sum C(a_i,2) = 6, sum C(b_j,2) = 3, C(6,2) = 15, expected = 18/15
+        // and ARI = (2 - 6/5) / (9/2 - 6/5) = 8/33; I = 2 * 1/3 ln((1/3)/(1/6)) = 2/3 ln 2,
+        // H(A) = ln 2 and H(B) = ln 3
+        ClusterEval eval = new ClusterEval(partition(0, 0, 0, 1, 1, 1), partition(0, 0, 1, 1, 2, 2));
+        double ln2 = Math.log(2), ln3 = Math.log(3);
+        assertEquals(8.0 / 33, eval.ari(), EPS);
+        assertEquals(2 * (2.0 / 3 * ln2) / (ln2 + ln3), eval.nmi(), EPS);
+        assertEquals(2.0 / 3 * ln2 / ln3, eval.nmiMax(), EPS);
+    }
+
+    @Test
+    public void singleClusterAgainstSingletons() {
+        // no pair is together in both, and none is expected to be: ARI = 0
+        ClusterEval eval = new ClusterEval(partition(0, 0, 0, 0), partition(0, 1, 2, 3));
+        assertEquals(0, eval.ari(), EPS);
+        assertEquals(0, eval.nmi(), EPS);
+    }
+
+    File write(String... lines) throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    public void readCommunityListWithTwoMembersFirst() throws Exception {
+        // a SNAP .cmty file: tab separated, the first community of two nodes
+        File file = write("1\t2", "3\t4\t5", "2\t6\t7");
+        NodeIds ids = new NodeIds();
+        Clustering truth = Clustering.read(file, ids, Clustering.Format.CLUSTERS);
+        assertEquals(3, truth.numClusters());
+        assertEquals(2, truth.numClustersOf(ids.id("2")));
+        assertEquals(1, truth.numClustersOf(ids.id("7")));
+
+        // named nodes: the second token is no cluster number, so guessed as a list
+        file = write("a\tb", "c\td\te");
+        assertEquals(2, Clustering.read(file, new NodeIds()).numClusters());
+    }
+
+    @Test
+    public void readLabels() throws Exception {
+        File file = write("a\t1", "b\t0", "c\t1", "d\t2");
+        NodeIds ids = new NodeIds();
+        Clustering found = Clustering.read(file, ids);
+        assertEquals(3, found.numClusters());
+        assertEquals(found.clusterOf(ids.id("a"), 0), found.clusterOf(ids.id("c"), 0));
+        assertEquals(1, new ClusterEval(Clustering.read(file, ids, Clustering.Format.LABELS), found).ari(), EPS);
+    }
+}
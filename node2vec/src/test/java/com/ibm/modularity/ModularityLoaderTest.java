@@ -0,0 +1,112 @@
+package com.ibm.modularity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the community lookups of ModularityLoader on small partitions, and that the
+ * int ids of index() give the same answers as the node names.
+ *
+ * @author dganguly
+ */
+public class ModularityLoaderTest {
+    // node names of the int ids; "x" and "y" are in no community
+    static final String[] NODES = { "a", "b", "c", "d", "e", "x", "f", "y" };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    ModularityLoader load(String... lines) throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        ModularityLoader loader = new ModularityLoader(file.getPath());
+        loader.index(NODES);
+        return loader;
+    }
+
+    // overlapInCommunity(int, int) agrees with overlapInCommunity(String, String) on all pairs
+    static void assertIntPathMatches(ModularityLoader loader) {
+        for (int i = 0; i < NODES.length; i++) {
+            for (int j = 0; j < NODES.length; j++) {
+                assertEquals(NODES[i] + ", " + NODES[j],
+                        loader.overlapInCommunity(NODES[i], NODES[j]), loader.overlapInCommunity(i, j));
+            }
+            int[] comms = loader.communities(NODES[i]);
+            assertEquals(NODES[i], comms.length, loader.numCommunitiesOf(i));
+            for (int j = 0; j < comms.length; j++)
+                assertEquals(NODES[i], comms[j], loader.communityOf(i, j));
+        }
+    }
+
+    @Test
+    public void disjointPartition() throws Exception {
+        ModularityLoader loader = load("a b c", "d  e", "f");
+
+        assertTrue(loader.isDisjoint());
+        assertEquals(3, loader.numCommunities());
+        assertArrayEquals(new int[] { 1 }, loader.communities("e"));
+        assertTrue(loader.overlapInCommunity("a", "c"));
+        assertTrue(loader.overlapInCommunity("d", "e"));
+        assertTrue(loader.overlapInCommunity("f", "f"));
+        assertFalse(loader.overlapInCommunity("a", "d"));
+        assertFalse(loader.overlapInCommunity("e", "f"));
+        assertEquals(0, loader.communityOf(0));
+        assertEquals(2, loader.communityOf(6));
+        assertIntPathMatches(loader);
+    }
+
+    @Test
+    public void overlappingPartition() throws Exception {
+        ModularityLoader loader = load("a b c", "c d", "d e f", "b f");
+
+        assertFalse(loader.isDisjoint());
+        assertEquals(4, loader.numCommunities());
+        assertArrayEquals(new int[] { 0, 3 }, loader.communities("b"));
+        assertArrayEquals(new int[] { 1, 2 }, loader.communities("d"));
+        assertTrue(loader.overlapInCommunity("a", "c"));
+        assertTrue(loader.overlapInCommunity("c", "d"));
+        assertTrue(loader.overlapInCommunity("b", "f"));
+        assertTrue(loader.overlapInCommunity("d", "f"));
+        assertFalse(loader.overlapInCommunity("a", "d"));
+        assertFalse(loader.overlapInCommunity("c", "e"));
+        assertFalse(loader.overlapInCommunity("a", "f"));
+        assertIntPathMatches(loader);
+    }
+
+    @Test
+    public void nodesInNoCommunity() throws Exception {
+        for (ModularityLoader loader : new ModularityLoader[] {
+                load("a b c", "d e f"), load("a b c", "c d e f") }) {
+            assertEquals(0, loader.communities("x").length);
+            assertEquals(0, loader.communities("unknown").length);
+            assertFalse(loader.overlapInCommunity("x", "x"));
+            assertFalse(loader.overlapInCommunity("x", "y"));
+            assertFalse(loader.overlapInCommunity("a", "x"));
+            assertFalse(loader.overlapInCommunity(5, 5));
+            assertFalse(loader.overlapInCommunity(5, 7));
+            assertFalse(loader.overlapInCommunity(0, 5));
+            assertEquals(0, loader.numCommunitiesOf(5));
+            assertIntPathMatches(loader);
+        }
+        assertEquals(-1, load("a b c", "d e f").communityOf(5));
+    }
+
+    @Test
+    public void repeatedNodeInALine() throws Exception {
+        ModularityLoader loader = load("a a b", "c d e f");
+
+        assertTrue(loader.isDisjoint());
+        assertArrayEquals(new int[] { 0 }, loader.communities("a"));
+        assertIntPathMatches(loader);
+    }
+}
@@ -0,0 +1,69 @@
+package com.ibm.node2vec;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.primitives.UnsignedLong;
+import java.math.BigInteger;
+import org.junit.Test;
+
+/**
+ * Checks that Word2VecRandom reproduces the sequence of the UnsignedLong/BigInteger
+ * generator it replaced, for the draws the sampling and training loops make.
+ *
+ * @author dganguly
+ */
+public class Word2VecRandomTest {
+    static final int N = 100000;
+    static final long[] SEEDS = { 1, Node2Vec.SEED, Node2Vec.SEED + 1000, 0, -1 };
+
+    // the earlier implementation (Node2Vec.getNextRandom and its callers)
+    static UnsignedLong getNextRandom(UnsignedLong previousRandom) {
+        return previousRandom.times(UnsignedLong.valueOf(25214903917L)).plus(UnsignedLong.valueOf(11L));
+    }
+
+    static float openUnitInterval(UnsignedLong r) {
+        return (r.bigIntegerValue().and(BigInteger.valueOf(0xFFFFL)).floatValue()) / (float)65536;
+    }
+
+    @Test
+    public void nextRandomMatchesUnsignedLong() {
+        for (long seed : SEEDS) {
+            UnsignedLong expected = UnsignedLong.fromLongBits(seed);
+            Word2VecRandom rnd = new Word2VecRandom(seed);
+            for (int i = 0; i < N; i++) {
+                expected = getNextRandom(expected);
+                assertEquals("seed " + seed + ", draw " + i, expected.longValue(), rnd.next());
+                assertEquals(expected.longValue(), rnd.value());
+            }
+        }
+    }
+
+    @Test
+    public void nextFloatMatchesOpenUnitInterval() {
+        for (long seed : SEEDS) {
+            UnsignedLong expected = UnsignedLong.fromLongBits(seed);
+            Word2VecRandom rnd = new Word2VecRandom(seed);
+            for (int i = 0; i < N; i++) {
+                expected = getNextRandom(expected);
+                assertEquals("seed " + seed + ", draw " + i, openUnitInterval(expected), rnd.nextFloat(), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void negativeSamplingIndexMatchesBigInteger() {
+        int table_size = (int)1e8, vocab_size = 4000;
+        for (long seed : SEEDS) {
+            UnsignedLong expected = UnsignedLong.fromLongBits(seed);
+            Word2VecRandom rnd = new Word2VecRandom(seed);
+            for (int i = 0; i < N; i++) {
+                expected = getNextRandom(expected);
+                BigInteger r = expected.bigIntegerValue();
+                assertEquals("seed " + seed + ", draw " + i,
+                        r.shiftRight(16).mod(BigInteger.valueOf(table_size)).intValue(), rnd.nextInt(table_size));
+                // the fallback for target == 0
+                assertEquals(r.mod(BigInteger.valueOf(vocab_size - 1)).intValue(), rnd.remainder(vocab_size - 1));
+            }
+        }
+    }
+}